@@ -4,6 +4,7 @@ import type {
   Repo,
   MeResponse,
   CommitStats,
+  CommitPeriod,
   NetworkGraph,
   LanguageStats,
   CommitTimeline,
@@ -11,6 +12,7 @@ import type {
   PullRequestsTimeline,
   ContributionStats,
   WorkTypeStats,
+  HotFiles,
 } from "./Types.ts";
 import { getCached, setCached } from "./Cache.ts";
 
@@ -74,14 +76,12 @@ export async function fetchCommitStats(
   login: string,
   period: "ALL_TIME" | "LAST_MONTH" | "LAST_WEEK",
 ): Promise<CommitStats> {
-  const path =
-    period === "ALL_TIME"
-      ? `/api/repositories/${owner}/${repo}/contributors/${login}/commit-stats/all-time`
-      : period === "LAST_MONTH"
-        ? `/api/repositories/${owner}/${repo}/contributors/${login}/commit-stats/last-month`
-        : `/api/repositories/${owner}/${repo}/contributors/${login}/commit-stats/last-week`;
-  const cacheKey = `commitStats:${owner}:${repo}:${login}:${period}`;
-  return fetchJsonCached<CommitStats>(path, cacheKey);
+  // One request returns every period, so switching periods is served from the cache.
+  const all = await fetchJsonCached<Record<CommitPeriod, CommitStats>>(
+    `/api/repositories/${owner}/${repo}/contributors/${login}/commit-stats`,
+    `commitStats:${owner}:${repo}:${login}`,
+  );
+  return all[period];
 }
 
 export const fetchNetworkGraph = (
@@ -149,3 +149,14 @@ export const fetchWorkTypeStats = (
     `/api/repositories/${encodeURIComponent(owner)}/${encodeURIComponent(repo)}/worktype-stats?period=${period}`,
     `workTypeStats:${owner}:${repo}:${period}`,
   );
+
+export const fetchHotFiles = (
+  owner: string,
+  repo: string,
+  period: "ALL_TIME" | "LAST_MONTH" | "LAST_WEEK" = "ALL_TIME",
+  limit = 10,
+) =>
+  fetchJsonCached<HotFiles>(
+    `/api/repositories/${encodeURIComponent(owner)}/${encodeURIComponent(repo)}/hot-files?period=${period}&limit=${limit}`,
+    `hotFiles:${owner}:${repo}:${period}:${limit}`,
+  );
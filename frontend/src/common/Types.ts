@@ -54,6 +54,7 @@ export type CommitStats = {
   netLinesChanged: number
   distinctFilesTouched: number
   topFilesModifiedCount: number
+  topFiles: FileChurn[]
   mainLanguagesCount: number
   issuesOpen: number
   issuesClosed: number
@@ -62,6 +63,11 @@ export type CommitStats = {
   prsClosed: number
 }
 
+export type FileChurn = {
+  path: string
+  changes: number
+}
+
 export type BranchInfo = {
   name: string
   sha: string
@@ -152,3 +158,10 @@ export type WorkTypeStats = {
   testCommits: number
   documentationCommits: number
 }
+
+export type HotFiles = {
+  owner: string
+  repo: string
+  period: CommitPeriod
+  files: FileChurn[]
+}
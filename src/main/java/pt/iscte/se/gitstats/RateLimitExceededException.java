@@ -0,0 +1,18 @@
+package pt.iscte.se.gitstats;
+
+import java.time.Duration;
+
+public class RateLimitExceededException extends RuntimeException {
+
+  private final Duration retryAfter;
+
+  public RateLimitExceededException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+}
@@ -43,7 +43,8 @@ public class SecurityConfig {
                   "/login**",
                   "/post-logout",
                   "/logout-app",
-                  "/github-logout"
+                  "/github-logout",
+                  "/webhooks/github"
           ).permitAll()
           .requestMatchers("/api/**", "/repositories", "/repository/**", "/list").authenticated()
           .anyRequest().authenticated())
@@ -57,6 +58,8 @@ public class SecurityConfig {
                   .defaultSuccessUrl(successUrl, true)
                   .failureUrl("/legacy?error")
           )
+          // Webhook deliveries carry no session; they are authenticated by their HMAC signature instead.
+          .csrf(csrf -> csrf.ignoringRequestMatchers("/webhooks/github"))
           .formLogin(AbstractHttpConfigurer::disable)
           .logout(logout -> logout
                   .logoutUrl("/logout")
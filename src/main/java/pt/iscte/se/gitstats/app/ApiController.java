@@ -3,11 +3,13 @@ package pt.iscte.se.gitstats.app;
 import pt.iscte.se.gitstats.dto.CommitPeriod;
 import pt.iscte.se.gitstats.dto.WorkTypeStats;
 import pt.iscte.se.gitstats.NoAuthorizedClientException;
+import pt.iscte.se.gitstats.RateLimitExceededException;
 
 import java.util.Map;
 import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -24,10 +26,12 @@ import org.springframework.web.bind.annotation.RestController;
 public class ApiController {
 
   private final GitHubService gitHubService;
+  private final WatchedRepositories watchedRepositories;
 
   @Autowired
-  public ApiController(GitHubService gitHubService) {
+  public ApiController(GitHubService gitHubService, WatchedRepositories watchedRepositories) {
     this.gitHubService = Objects.requireNonNull(gitHubService);
+    this.watchedRepositories = Objects.requireNonNull(watchedRepositories);
   }
 
   private static ResponseEntity<?> unauthorizedLoginFirst() {
@@ -45,6 +49,17 @@ public class ApiController {
         .body(Map.of("message", message, "detail", e.getMessage()));
   }
 
+  private static ResponseEntity<?> tooManyRequests(RateLimitExceededException e) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter().toSeconds()))
+        .body(Map.of("message", e.getMessage(), "retryAfterSeconds", e.getRetryAfter().toSeconds()));
+  }
+
+  private static ResponseEntity<?> notImplemented(UnsupportedOperationException e) {
+    return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+        .body(Map.of("message", e.getMessage()));
+  }
+
   private static boolean isAuthenticated(OAuth2AuthenticationToken authentication, OAuth2User principal) {
     return authentication != null && principal != null;
   }
@@ -68,6 +83,33 @@ public class ApiController {
     ));
   }
 
+  @GetMapping("/rate-limit")
+  public ResponseEntity<?> rateLimit(OAuth2AuthenticationToken authentication,
+                                     @AuthenticationPrincipal OAuth2User principal) {
+    if (!isAuthenticated(authentication, principal)) {
+      return unauthorizedLoginFirst();
+    }
+    try {
+      var budget = gitHubService.getRateLimitBudget(authentication);
+      return ResponseEntity.ok(budget);
+    } catch (NoAuthorizedClientException e) {
+      return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
+    } catch (RuntimeException e) {
+      return internalServerError("Error loading rate limit", e);
+    }
+  }
+
+  @GetMapping("/watched")
+  public ResponseEntity<?> watched(OAuth2AuthenticationToken authentication,
+                                   @AuthenticationPrincipal OAuth2User principal) {
+    if (!isAuthenticated(authentication, principal)) {
+      return unauthorizedLoginFirst();
+    }
+    return ResponseEntity.ok(watchedRepositories.watched(authentication));
+  }
+
   @GetMapping("/repositories")
   public ResponseEntity<?> repositories(OAuth2AuthenticationToken authentication,
                                         @AuthenticationPrincipal OAuth2User principal) {
@@ -79,6 +121,8 @@ public class ApiController {
       return ResponseEntity.ok(repositories);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading repositories", e);
     }
@@ -95,11 +139,34 @@ public class ApiController {
     try {
       var contributors = gitHubService.getContributors(authentication, owner, repo);
       return ResponseEntity.ok(contributors);
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading contributors", e);
     }
   }
 
+  @GetMapping("/repositories/{owner}/{repo}/contributors/{login}/commit-stats")
+  public ResponseEntity<?> commitStatsAllPeriods(OAuth2AuthenticationToken authentication,
+                                                 @AuthenticationPrincipal OAuth2User principal,
+                                                 @PathVariable String owner,
+                                                 @PathVariable String repo,
+                                                 @PathVariable String login) {
+    if (!isAuthenticated(authentication, principal)) {
+      return unauthorizedLoginFirst();
+    }
+    try {
+      var stats = gitHubService.getStatsForAllPeriods(authentication, owner, repo, login);
+      return ResponseEntity.ok(stats);
+    } catch (NoAuthorizedClientException e) {
+      return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
+    } catch (RuntimeException e) {
+      return internalServerError("Error loading commit stats", e);
+    }
+  }
+
   @GetMapping("/repositories/{owner}/{repo}/contributors/{login}/commit-stats/all-time")
   public ResponseEntity<?> commitStatsAllTime(OAuth2AuthenticationToken authentication,
                                               @AuthenticationPrincipal OAuth2User principal,
@@ -114,6 +181,8 @@ public class ApiController {
       return ResponseEntity.ok(stats);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading commit stats", e);
     }
@@ -133,6 +202,8 @@ public class ApiController {
       return ResponseEntity.ok(stats);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading commit stats", e);
     }
@@ -152,6 +223,8 @@ public class ApiController {
       return ResponseEntity.ok(stats);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading commit stats", e);
     }
@@ -171,6 +244,8 @@ public class ApiController {
       return ResponseEntity.ok(network);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading network graph", e);
     }
@@ -189,6 +264,8 @@ public class ApiController {
       return ResponseEntity.ok(languages);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading languages", e);
     }
@@ -208,6 +285,8 @@ public class ApiController {
       return ResponseEntity.ok(timeline);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading commit timeline", e);
     }
@@ -227,6 +306,8 @@ public class ApiController {
       return ResponseEntity.ok(timeline);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading issues timeline", e);
     }
@@ -246,6 +327,8 @@ public class ApiController {
       return ResponseEntity.ok(timeline);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading pull requests timeline", e);
     }
@@ -267,9 +350,12 @@ public class ApiController {
         default -> CommitPeriod.ALL_TIME;
       };
       var stats = gitHubService.getContributionStats(authentication, owner, repo, p);
+      watchedRepositories.opened(authentication, owner, repo);
       return ResponseEntity.ok(stats);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading contribution stats", e);
     }
@@ -291,12 +377,44 @@ public class ApiController {
         default -> CommitPeriod.ALL_TIME;
       };
       WorkTypeStats stats = gitHubService.getWorkTypeStats(authentication, owner, repo, p);
+      watchedRepositories.opened(authentication, owner, repo);
       return ResponseEntity.ok(stats);
     } catch (NoAuthorizedClientException e) {
       return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
     } catch (RuntimeException e) {
       return internalServerError("Error loading work type stats", e);
     }
   }
 
+  @GetMapping("/repositories/{owner}/{repo}/hot-files")
+  public ResponseEntity<?> hotFiles(OAuth2AuthenticationToken authentication,
+                                    @AuthenticationPrincipal OAuth2User principal,
+                                    @PathVariable String owner,
+                                    @PathVariable String repo,
+                                    @RequestParam(defaultValue = "ALL_TIME") String period,
+                                    @RequestParam(defaultValue = "10") int limit) {
+    if (!isAuthenticated(authentication, principal)) {
+      return unauthorizedLoginFirst();
+    }
+    try {
+      CommitPeriod p = switch (period) {
+        case "LAST_MONTH" -> CommitPeriod.LAST_MONTH;
+        case "LAST_WEEK" -> CommitPeriod.LAST_WEEK;
+        default -> CommitPeriod.ALL_TIME;
+      };
+      var hotFiles = gitHubService.getHotFiles(authentication, owner, repo, p, limit);
+      return ResponseEntity.ok(hotFiles);
+    } catch (NoAuthorizedClientException e) {
+      return unauthorizedLoginAgain();
+    } catch (RateLimitExceededException e) {
+      return tooManyRequests(e);
+    } catch (UnsupportedOperationException e) {
+      return notImplemented(e);
+    } catch (RuntimeException e) {
+      return internalServerError("Error loading hot files", e);
+    }
+  }
+
 }
@@ -0,0 +1,47 @@
+package pt.iscte.se.gitstats.app;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Helpers for exchange filters that need to hold on to a response body and hand out copies of it.
+ */
+final class ClientResponses {
+
+  private ClientResponses() {
+  }
+
+  /**
+   * Reads the body of {@code response} into memory. Callers only do so for bodies whose
+   * {@code Content-Length} they have already checked against their own bound.
+   */
+  static Mono<byte[]> readBody(ClientResponse response) {
+    return DataBufferUtils.join(response.bodyToFlux(DataBuffer.class))
+            .map(buffer -> {
+              byte[] bytes = new byte[buffer.readableByteCount()];
+              buffer.read(bytes);
+              DataBufferUtils.release(buffer);
+              return bytes;
+            })
+            .defaultIfEmpty(new byte[0]);
+  }
+
+  /**
+   * Builds a fresh response around {@code body}, keeping the request and codecs of {@code template}
+   * (whose own body must already have been consumed or released).
+   */
+  static ClientResponse withBody(ClientResponse template, HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    return ClientResponse.create(status, template.strategies())
+            .request(template.request())
+            .headers(target -> target.addAll(headers))
+            .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+            .build();
+  }
+
+}
@@ -0,0 +1,97 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Compact projection of a commit with its line statistics: only the fields the statistics use. A
+ * commit never changes once pushed, so a projection can be kept indefinitely.
+ * <p>
+ * {@code files} is only known when the commit came from the REST {@code /commits/{sha}} endpoint; the
+ * GraphQL backend leaves it empty and only reports {@code changedFiles}.
+ */
+public record CommitDetail(
+  String sha,
+  String authorLogin,
+  String date,
+  String message,
+  int additions,
+  int deletions,
+  int changedFiles,
+  List<FileChange> files
+) {
+
+  public record FileChange(
+    String filename,
+    int additions,
+    int deletions
+  ) {}
+
+  public CommitDetail withAuthorLogin(String login) {
+    return new CommitDetail(sha, login, date, message, additions, deletions, changedFiles, files);
+  }
+
+  /**
+   * Reads a REST {@code /commits/{sha}} answer, skipping the patches and every other field the
+   * statistics do not use.
+   */
+  static JsonProjection<CommitDetail> projection() {
+    return new Projection();
+  }
+
+  private static final class Projection implements JsonProjection<CommitDetail> {
+    private String sha = "";
+    private String authorLogin;
+    private String date;
+    private String message = "";
+    private int additions;
+    private int deletions;
+    private final List<FileChange> files = new ArrayList<>();
+    private String fileName;
+    private int fileAdditions;
+    private int fileDeletions;
+
+    @Override
+    public void value(String path, JsonParser parser) throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return;
+      }
+      switch (path) {
+        case "sha" -> sha = parser.getText();
+        case "author.login" -> authorLogin = parser.getText();
+        case "commit.author.date" -> date = parser.getText();
+        case "commit.message" -> message = parser.getText();
+        case "stats.additions" -> additions = parser.getValueAsInt(0);
+        case "stats.deletions" -> deletions = parser.getValueAsInt(0);
+        case "files[].filename" -> fileName = parser.getText();
+        case "files[].additions" -> fileAdditions = parser.getValueAsInt(0);
+        case "files[].deletions" -> fileDeletions = parser.getValueAsInt(0);
+        default -> {
+        }
+      }
+    }
+
+    @Override
+    public void endObject(String path) {
+      if (!"files[]".equals(path)) {
+        return;
+      }
+      if (fileName != null && !fileName.isBlank()) {
+        files.add(new FileChange(fileName, fileAdditions, fileDeletions));
+      }
+      fileName = null;
+      fileAdditions = 0;
+      fileDeletions = 0;
+    }
+
+    @Override
+    public CommitDetail build() {
+      return new CommitDetail(sha, authorLogin, date, message, additions, deletions, files.size(), List.copyOf(files));
+    }
+  }
+
+}
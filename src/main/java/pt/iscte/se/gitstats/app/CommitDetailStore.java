@@ -0,0 +1,176 @@
+package pt.iscte.se.gitstats.app;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable store of {@link CommitDetail} projections keyed by (repository, sha), backed by an embedded
+ * H2 database at {@code app.github.commit-store.url}, a file database by default so that it survives
+ * restarts. Entries are evicted least-recently-used first once the store grows beyond
+ * {@code app.github.commit-store.max-entries}.
+ */
+@Component
+public class CommitDetailStore {
+
+  private static final int QUERY_CHUNK = 500;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Connection connection;
+  private final long maxEntries;
+  private final AtomicLong size = new AtomicLong();
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  public CommitDetailStore(@Value("${app.github.commit-store.url:jdbc:h2:file:./data/commit-store}") String url,
+                           @Value("${app.github.commit-store.max-entries:200000}") long maxEntries,
+                           MeterRegistry meterRegistry) {
+    this.maxEntries = maxEntries;
+    try {
+      this.connection = DriverManager.getConnection(url);
+      try (var statement = connection.createStatement()) {
+        statement.execute("""
+                CREATE TABLE IF NOT EXISTS commit_detail (
+                  repo VARCHAR(255) NOT NULL,
+                  sha VARCHAR(64) NOT NULL,
+                  detail CHARACTER LARGE OBJECT NOT NULL,
+                  last_access BIGINT NOT NULL,
+                  PRIMARY KEY (repo, sha)
+                )""");
+        statement.execute("CREATE INDEX IF NOT EXISTS commit_detail_last_access ON commit_detail (last_access)");
+        try (var rs = statement.executeQuery("SELECT COUNT(*) FROM commit_detail")) {
+          rs.next();
+          size.set(rs.getLong(1));
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to open commit store at " + url, e);
+    }
+    this.hits = Counter.builder("gitstats.commit.store.hits").register(meterRegistry);
+    this.misses = Counter.builder("gitstats.commit.store.misses").register(meterRegistry);
+    this.evictions = Counter.builder("gitstats.commit.store.evictions").register(meterRegistry);
+    Gauge.builder("gitstats.commit.store.size", size, AtomicLong::get).register(meterRegistry);
+  }
+
+  static String repoKey(String owner, String repo) {
+    return (owner + "/" + repo).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the stored projections for the given shas; shas that are not stored are absent from
+   * the result.
+   */
+  public synchronized Map<String, CommitDetail> getAll(String repoKey, List<String> shas) {
+    Map<String, CommitDetail> found = new HashMap<>();
+    long now = System.currentTimeMillis();
+    try {
+      for (int from = 0; from < shas.size(); from += QUERY_CHUNK) {
+        var chunk = shas.subList(from, Math.min(shas.size(), from + QUERY_CHUNK));
+        var placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+        try (var select = connection.prepareStatement(
+                "SELECT sha, detail FROM commit_detail WHERE repo = ? AND sha IN (" + placeholders + ")")) {
+          select.setString(1, repoKey);
+          for (int i = 0; i < chunk.size(); i++) {
+            select.setString(i + 2, chunk.get(i));
+          }
+          try (var rs = select.executeQuery()) {
+            while (rs.next()) {
+              found.put(rs.getString(1), objectMapper.readValue(rs.getString(2), CommitDetail.class));
+            }
+          }
+        }
+      }
+      if (!found.isEmpty()) {
+        touch(repoKey, found.keySet(), now);
+      }
+    } catch (SQLException | JsonProcessingException e) {
+      throw new IllegalStateException("Unable to read from commit store", e);
+    }
+    hits.increment(found.size());
+    misses.increment(shas.size() - found.size());
+    return found;
+  }
+
+  public synchronized void putAll(String repoKey, Collection<CommitDetail> details) {
+    if (details.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    try (var merge = connection.prepareStatement(
+            "MERGE INTO commit_detail (repo, sha, detail, last_access) KEY (repo, sha) VALUES (?, ?, ?, ?)")) {
+      for (CommitDetail detail : details) {
+        merge.setString(1, repoKey);
+        merge.setString(2, detail.sha());
+        merge.setString(3, objectMapper.writeValueAsString(detail));
+        merge.setLong(4, now);
+        merge.addBatch();
+      }
+      merge.executeBatch();
+      refreshSize();
+      evictIfNeeded();
+    } catch (SQLException | JsonProcessingException e) {
+      throw new IllegalStateException("Unable to write to commit store", e);
+    }
+  }
+
+  private void touch(String repoKey, Collection<String> shas, long now) throws SQLException {
+    try (PreparedStatement update = connection.prepareStatement(
+            "UPDATE commit_detail SET last_access = ? WHERE repo = ? AND sha = ?")) {
+      for (String sha : shas) {
+        update.setLong(1, now);
+        update.setString(2, repoKey);
+        update.setString(3, sha);
+        update.addBatch();
+      }
+      update.executeBatch();
+    }
+  }
+
+  private void refreshSize() throws SQLException {
+    try (var statement = connection.createStatement();
+         var rs = statement.executeQuery("SELECT COUNT(*) FROM commit_detail")) {
+      rs.next();
+      size.set(rs.getLong(1));
+    }
+  }
+
+  private void evictIfNeeded() throws SQLException {
+    long excess = size.get() - maxEntries;
+    if (excess <= 0) {
+      return;
+    }
+    try (var delete = connection.prepareStatement("""
+            DELETE FROM commit_detail WHERE (repo, sha) IN (
+              SELECT repo, sha FROM commit_detail ORDER BY last_access LIMIT ?
+            )""")) {
+      delete.setLong(1, excess);
+      int deleted = delete.executeUpdate();
+      evictions.increment(deleted);
+      size.addAndGet(-deleted);
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() throws SQLException {
+    connection.close();
+  }
+
+}
@@ -0,0 +1,87 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Fetches {@code /repos/{owner}/{repo}/commits/{sha}} for many commits at once, keeping at most
+ * {@code concurrency} requests in flight. Commits already present in the {@link CommitDetailStore}
+ * are served from it; the others are downloaded and written back in batches. Results arrive in
+ * completion order, so callers must fold them with an order-independent reduction (sums, set
+ * unions, counters).
+ * <p>
+ * Each batch is admitted against the token's rate limit budget for the lookups it still has to make,
+ * so a cold history fails with {@link pt.iscte.se.gitstats.RateLimitExceededException} before spending
+ * calls it cannot finish, while a history already in the store costs nothing.
+ */
+public final class CommitDetailsFetcher {
+
+  private static final int LOOKUP_BATCH_SIZE = 500;
+  private static final int STORE_BATCH_SIZE = 100;
+
+  private final WebClient webClient;
+  private final CommitDetailStore store;
+  private final RateLimitFilter rateLimits;
+  private final int concurrency;
+
+  public CommitDetailsFetcher(WebClient webClient, CommitDetailStore store, RateLimitFilter rateLimits, int concurrency) {
+    this.webClient = Objects.requireNonNull(webClient, "webClient must not be null");
+    this.store = Objects.requireNonNull(store, "store must not be null");
+    this.rateLimits = Objects.requireNonNull(rateLimits, "rateLimits must not be null");
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1");
+    }
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Streams the details of {@code shas}. They are resolved {@value #LOOKUP_BATCH_SIZE} at a time, and
+   * the next batch is only looked up once the subscriber has taken the previous one, so memory stays
+   * bounded by one batch however long the history is.
+   */
+  public Flux<CommitDetail> fetch(String accessToken, String owner, String repo, List<String> shas) {
+    Objects.requireNonNull(accessToken, "accessToken must not be null");
+    var repoKey = CommitDetailStore.repoKey(owner, repo);
+    return Flux.fromIterable(shas)
+            .filter(sha -> sha != null && !sha.isBlank())
+            .distinct()
+            .buffer(LOOKUP_BATCH_SIZE)
+            .concatMap(batch -> fetchBatch(accessToken, owner, repo, repoKey, batch), 1);
+  }
+
+  private Flux<CommitDetail> fetchBatch(String accessToken,
+                                        String owner,
+                                        String repo,
+                                        String repoKey,
+                                        List<String> batch) {
+    return Mono.fromCallable(() -> store.getAll(repoKey, batch))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMapMany(stored -> {
+              var missing = batch.stream()
+                      .filter(sha -> !stored.containsKey(sha))
+                      .toList();
+              if (!missing.isEmpty()) {
+                rateLimits.admit(accessToken, missing.size());
+              }
+              Flux<CommitDetail> downloaded = Flux.fromIterable(missing)
+                      .flatMap(sha -> webClient.get()
+                              .uri("/repos/{owner}/{repo}/commits/{sha}", owner, repo, sha)
+                              .header("Authorization", "Bearer " + accessToken)
+                              .retrieve()
+                              .bodyToFlux(DataBuffer.class)
+                              .as(body -> StreamingJsonDecoder.decodeObject(body, CommitDetail::projection)), concurrency)
+                      .buffer(STORE_BATCH_SIZE)
+                      .publishOn(Schedulers.boundedElastic())
+                      .doOnNext(downloadedBatch -> store.putAll(repoKey, downloadedBatch))
+                      .flatMapIterable(downloadedBatch -> downloadedBatch);
+              return Flux.fromIterable(stored.values()).concatWith(downloaded);
+            });
+  }
+
+}
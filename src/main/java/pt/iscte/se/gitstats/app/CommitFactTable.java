@@ -0,0 +1,594 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.FileChurn;
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column-oriented table of the commits of one branch: one primitive array per field instead of one
+ * object per commit, so a repository with a long history costs a few dozen bytes per commit and a
+ * query is a loop over arrays.
+ * <p>
+ * Rows are first added from the commit listing (sha, author, dates, and the work type when the
+ * message settles it) and completed later by {@link #recordDetails} with the line statistics, the
+ * touched files and, if still unknown, the work type. Shas are kept as
+ * their 20 raw bytes, author logins and file paths are interned in per-table dictionaries and stored
+ * as int ids, and each commit's files are a slice of one shared id array. Lookups by sha go through
+ * its first 64 bits, which are unique enough within a repository (git itself abbreviates to far less).
+ * Each path also keeps its 64-bit hash and the id of its language (its lower-cased extension).
+ * <p>
+ * Distinct files are counted exactly, as a bit set over path ids, or, with a sketch precision other
+ * than {@link #EXACT}, approximately in a fixed-size {@link HyperLogLog} per window and author. The
+ * most changed files are ranked with {@link HeavyHitters}, in a bounded number of counters whatever
+ * the length of the history.
+ * <p>
+ * All methods are synchronized on the table.
+ */
+public final class CommitFactTable {
+
+  /**
+   * Sketch precision asking for exact distinct-file counts.
+   */
+  public static final int EXACT = 0;
+
+  /**
+   * Number of most changed files reported in {@link Totals#topFiles()}.
+   */
+  public static final int TOP_FILES = 5;
+
+  // Heavy-hitter counters per ranking: with this many for a few files, the top ones are exact unless
+  // the changes are spread almost evenly.
+  private static final int MIN_HOT_FILE_COUNTERS = 64;
+
+  private static final int UNKNOWN = -1;
+  private static final byte NO_WORK_TYPE = -1;
+  private static final int SHA_BYTES = 20;
+  private static final HexFormat HEX = HexFormat.of();
+  private static final WorkType[] WORK_TYPES = WorkType.values();
+
+  private final Dictionary authors = new Dictionary();
+  private final Dictionary paths = new Dictionary();
+  private final Dictionary languages = new Dictionary();
+  private final ShaIndex index = new ShaIndex();
+
+  private int size;
+  private byte[] shaBytes = new byte[64 * SHA_BYTES];
+  private final Map<Integer, String> irregularShas = new HashMap<>();
+  private int[] authorIds = new int[64];
+  private long[] authorDates = new long[64];
+  private long[] committerDates = new long[64];
+  private int[] additions = new int[64];
+  private int[] deletions = new int[64];
+  private int[] fileStarts = new int[64];
+  private int[] fileCounts = new int[64];
+  private byte[] workTypes = new byte[64];
+
+  private int fileIdCount;
+  private int[] fileIds = new int[256];
+  private long[] pathHashes = new long[256];
+  private int[] pathLanguages = new int[256];
+
+  /**
+   * Line statistics of a set of commits. The touched files are either {@code files}, a set of path ids
+   * (see {@link #path(int)}), or {@code fileSketch} when counted approximately; the other one is
+   * {@code null}. {@code languages} holds language ids, of which there are few enough to always be
+   * counted exactly. {@code topFiles} ranks the at most {@link #TOP_FILES} most changed files by the
+   * number of commits that changed them.
+   */
+  public record Totals(int commitCount,
+                       long linesAdded,
+                       long linesDeleted,
+                       BitSet files,
+                       HyperLogLog fileSketch,
+                       BitSet languages,
+                       List<FileChurn> topFiles) {
+
+    /**
+     * Totals known without their files.
+     */
+    public Totals(int commitCount, long linesAdded, long linesDeleted) {
+      this(commitCount, linesAdded, linesDeleted, new BitSet(), null, new BitSet(), List.of());
+    }
+
+    public int distinctFiles() {
+      return files != null ? files.cardinality() : (int) fileSketch.estimate();
+    }
+
+    public int distinctLanguages() {
+      return languages.cardinality();
+    }
+
+    /**
+     * Combines the totals of two disjoint sets of commits of the same table (two contributors, say),
+     * counted with the same precision. Neither operand is modified. The merged top files are ranked
+     * from both lists only, so a file just outside both of them may be missing.
+     */
+    public Totals merge(Totals other) {
+      BitSet mergedFiles = null;
+      HyperLogLog mergedSketch = null;
+      if (files != null && other.files != null) {
+        mergedFiles = (BitSet) files.clone();
+        mergedFiles.or(other.files);
+      } else if (fileSketch != null && other.fileSketch != null) {
+        mergedSketch = new HyperLogLog(fileSketch.precision());
+        mergedSketch.merge(fileSketch);
+        mergedSketch.merge(other.fileSketch);
+      } else {
+        throw new IllegalArgumentException("cannot merge exact and approximate totals");
+      }
+      BitSet mergedLanguages = (BitSet) languages.clone();
+      mergedLanguages.or(other.languages);
+      Map<String, Long> changes = new HashMap<>();
+      for (FileChurn file : topFiles) {
+        changes.merge(file.path(), file.changes(), Long::sum);
+      }
+      for (FileChurn file : other.topFiles) {
+        changes.merge(file.path(), file.changes(), Long::sum);
+      }
+      List<FileChurn> mergedTopFiles = changes.entrySet().stream()
+              .map(change -> new FileChurn(change.getKey(), change.getValue()))
+              .sorted(Comparator.comparingLong(FileChurn::changes).reversed().thenComparing(FileChurn::path))
+              .limit(TOP_FILES)
+              .toList();
+      return new Totals(commitCount + other.commitCount,
+              linesAdded + other.linesAdded,
+              linesDeleted + other.linesDeleted,
+              mergedFiles,
+              mergedSketch,
+              mergedLanguages,
+              mergedTopFiles);
+    }
+  }
+
+  /**
+   * Adds a commit from the listing, or refreshes the author of a known one. Dates are epoch seconds.
+   */
+  public synchronized void addListing(String sha, String authorLogin, long authorDate, long committerDate) {
+    int row = rowOf(sha);
+    if (row == UNKNOWN) {
+      row = append(sha);
+    }
+    authorIds[row] = authorLogin == null ? UNKNOWN : authors.id(authorLogin);
+    authorDates[row] = authorDate;
+    committerDates[row] = committerDate;
+  }
+
+  /**
+   * Records the work type of a listed commit, unless one is already known. Unknown shas are ignored.
+   */
+  public synchronized void recordWorkType(String sha, WorkType workType) {
+    int row = rowOf(sha);
+    if (row != UNKNOWN && workTypes[row] == NO_WORK_TYPE) {
+      workTypes[row] = (byte) workType.ordinal();
+    }
+  }
+
+  /**
+   * Completes a commit with its line statistics, files and work type, adding it first when it did not
+   * come through the listing (the GraphQL backend). Known statistics and work types are never
+   * overwritten: a commit does not change once pushed.
+   */
+  public synchronized void recordDetails(CommitDetail details, WorkType workType) {
+    int row = rowOf(details.sha());
+    if (row == UNKNOWN) {
+      row = append(details.sha());
+      long date = RepositorySync.epochSeconds(details.date());
+      authorIds[row] = details.authorLogin() == null ? UNKNOWN : authors.id(details.authorLogin());
+      authorDates[row] = date;
+      committerDates[row] = date;
+    } else if (additions[row] != UNKNOWN) {
+      return;
+    }
+    additions[row] = details.additions();
+    deletions[row] = details.deletions();
+    if (workTypes[row] == NO_WORK_TYPE) {
+      workTypes[row] = (byte) workType.ordinal();
+    }
+    var files = details.files();
+    fileIds = ensure(fileIds, fileIdCount + files.size());
+    fileStarts[row] = fileIdCount;
+    fileCounts[row] = files.size();
+    for (CommitDetail.FileChange file : files) {
+      fileIds[fileIdCount++] = pathId(file.filename());
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean contains(String sha) {
+    return rowOf(sha) != UNKNOWN;
+  }
+
+  /**
+   * Returns the listed commits committed at or after {@code since} whose statistics are not known yet,
+   * only those of {@code authorLogin} unless it is {@code null}.
+   */
+  public synchronized List<String> shasWithoutDetails(long since, String authorLogin) {
+    List<String> missing = new ArrayList<>();
+    int author = authors.find(authorLogin);
+    if (authorLogin != null && author == UNKNOWN) {
+      return missing;
+    }
+    for (int row = 0; row < size; row++) {
+      if (committerDates[row] >= since && additions[row] == UNKNOWN
+              && (authorLogin == null || authorIds[row] == author)) {
+        missing.add(sha(row));
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Returns the listed commits committed at or after {@code since} whose work type is not known yet.
+   */
+  public synchronized List<String> shasWithoutWorkType(long since) {
+    List<String> missing = new ArrayList<>();
+    for (int row = 0; row < size; row++) {
+      if (committerDates[row] >= since && workTypes[row] == NO_WORK_TYPE) {
+        missing.add(sha(row));
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Returns the listing view of the commits committed at or after {@code since}.
+   */
+  public synchronized List<RepositorySync.CommitRow> rows(long since) {
+    List<RepositorySync.CommitRow> rows = new ArrayList<>();
+    for (int row = 0; row < size; row++) {
+      if (committerDates[row] >= since) {
+        rows.add(new RepositorySync.CommitRow(sha(row), authors.value(authorIds[row]), authorDates[row], committerDates[row]));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the author dates of the commits authored at or after {@code since}, in no particular order.
+   */
+  public synchronized long[] authorDates(long since) {
+    long[] dates = new long[size];
+    int count = 0;
+    for (int row = 0; row < size; row++) {
+      if (authorDates[row] >= since) {
+        dates[count++] = authorDates[row];
+      }
+    }
+    return Arrays.copyOf(dates, count);
+  }
+
+  /**
+   * Sums the commits of {@code authorLogin} committed at or after {@code since}, counting distinct
+   * files with {@code sketchPrecision} ({@link #EXACT} or a {@link HyperLogLog} precision).
+   */
+  public synchronized Totals totals(long since, String authorLogin, int sketchPrecision) {
+    return totals(new long[] {since}, authorLogin, sketchPrecision)[0];
+  }
+
+  /**
+   * Sums the commits of {@code authorLogin} for several windows in one pass: element {@code i} of the
+   * result covers the commits committed at or after {@code sinces[i]}.
+   */
+  public synchronized Totals[] totals(long[] sinces, String authorLogin, int sketchPrecision) {
+    int windows = sinces.length;
+    int[] commitCounts = new int[windows];
+    long[] linesAdded = new long[windows];
+    long[] linesDeleted = new long[windows];
+    FileCounter[] files = new FileCounter[windows];
+    for (int w = 0; w < windows; w++) {
+      files[w] = new FileCounter(sketchPrecision);
+    }
+    int author = authors.find(authorLogin);
+    for (int row = 0; author != UNKNOWN && row < size; row++) {
+      if (authorIds[row] != author) {
+        continue;
+      }
+      for (int w = 0; w < windows; w++) {
+        if (committerDates[row] < sinces[w]) {
+          continue;
+        }
+        commitCounts[w]++;
+        if (additions[row] != UNKNOWN) {
+          linesAdded[w] += additions[row];
+          linesDeleted[w] += deletions[row];
+          files[w].addFilesOf(row);
+        }
+      }
+    }
+    Totals[] totals = new Totals[windows];
+    for (int w = 0; w < windows; w++) {
+      totals[w] = files[w].totals(commitCounts[w], linesAdded[w], linesDeleted[w]);
+    }
+    return totals;
+  }
+
+  /**
+   * Sums the commits committed at or after {@code since} per author login, in one pass. Commits
+   * without a linked GitHub account are left out.
+   */
+  public synchronized Map<String, Totals> totalsByAuthor(long since, int sketchPrecision) {
+    int authorCount = authors.size();
+    int[] commitCounts = new int[authorCount];
+    long[] linesAdded = new long[authorCount];
+    long[] linesDeleted = new long[authorCount];
+    FileCounter[] files = new FileCounter[authorCount];
+    for (int row = 0; row < size; row++) {
+      int author = authorIds[row];
+      if (author == UNKNOWN || committerDates[row] < since) {
+        continue;
+      }
+      commitCounts[author]++;
+      if (additions[row] != UNKNOWN) {
+        linesAdded[author] += additions[row];
+        linesDeleted[author] += deletions[row];
+        if (files[author] == null) {
+          files[author] = new FileCounter(sketchPrecision);
+        }
+        files[author].addFilesOf(row);
+      }
+    }
+    Map<String, Totals> totals = new HashMap<>();
+    for (int author = 0; author < authorCount; author++) {
+      if (commitCounts[author] > 0) {
+        var counter = files[author] == null ? new FileCounter(sketchPrecision) : files[author];
+        totals.put(authors.value(author), counter.totals(commitCounts[author], linesAdded[author], linesDeleted[author]));
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Counts the commits committed at or after {@code since} per work type. Commits whose work type is
+   * not known yet are not counted.
+   */
+  public synchronized long[] workTypeCounts(long since) {
+    long[] counts = new long[WORK_TYPES.length];
+    for (int row = 0; row < size; row++) {
+      if (committerDates[row] >= since && workTypes[row] != NO_WORK_TYPE) {
+        counts[workTypes[row]]++;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Ranks the at most {@code limit} files changed by the most commits committed at or after
+   * {@code since}, whoever authored them.
+   */
+  public synchronized List<FileChurn> hotFiles(long since, int limit) {
+    var hotFiles = new HeavyHitters(hotFileCounters(limit));
+    for (int row = 0; row < size; row++) {
+      if (committerDates[row] >= since && additions[row] != UNKNOWN) {
+        for (int i = fileStarts[row], end = i + fileCounts[row]; i < end; i++) {
+          hotFiles.add(fileIds[i]);
+        }
+      }
+    }
+    return fileChurn(hotFiles, limit);
+  }
+
+  public synchronized String path(int id) {
+    return paths.value(id);
+  }
+
+  private List<FileChurn> fileChurn(HeavyHitters hotFiles, int limit) {
+    List<FileChurn> churn = new ArrayList<>();
+    for (HeavyHitters.Entry entry : hotFiles.top(limit)) {
+      churn.add(new FileChurn(paths.value(entry.key()), entry.count()));
+    }
+    return churn;
+  }
+
+  private static int hotFileCounters(int limit) {
+    return Math.max(MIN_HOT_FILE_COUNTERS, 8 * limit);
+  }
+
+  private int pathId(String path) {
+    int known = paths.size();
+    int id = paths.id(path);
+    if (id == known) {
+      pathHashes = ensure(pathHashes, id + 1);
+      pathLanguages = ensure(pathLanguages, id + 1);
+      pathHashes[id] = HyperLogLog.hash(path);
+      int dot = path.lastIndexOf('.');
+      pathLanguages[id] = dot > 0 && dot < path.length() - 1
+              ? languages.id(path.substring(dot + 1).toLowerCase(Locale.ROOT))
+              : UNKNOWN;
+    }
+    return id;
+  }
+
+  private int rowOf(String sha) {
+    return index.get(shaKey(sha));
+  }
+
+  private int append(String sha) {
+    if (size == authorIds.length) {
+      int capacity = size * 2;
+      shaBytes = Arrays.copyOf(shaBytes, capacity * SHA_BYTES);
+      authorIds = Arrays.copyOf(authorIds, capacity);
+      authorDates = Arrays.copyOf(authorDates, capacity);
+      committerDates = Arrays.copyOf(committerDates, capacity);
+      additions = Arrays.copyOf(additions, capacity);
+      deletions = Arrays.copyOf(deletions, capacity);
+      fileStarts = Arrays.copyOf(fileStarts, capacity);
+      fileCounts = Arrays.copyOf(fileCounts, capacity);
+      workTypes = Arrays.copyOf(workTypes, capacity);
+    }
+    int row = size++;
+    if (sha.length() == 2 * SHA_BYTES && sha.chars().allMatch(HexFormat::isHexDigit)) {
+      System.arraycopy(HEX.parseHex(sha), 0, shaBytes, row * SHA_BYTES, SHA_BYTES);
+    } else {
+      irregularShas.put(row, sha);
+    }
+    additions[row] = UNKNOWN;
+    deletions[row] = UNKNOWN;
+    workTypes[row] = NO_WORK_TYPE;
+    index.put(shaKey(sha), row);
+    return row;
+  }
+
+  private String sha(int row) {
+    var irregular = irregularShas.get(row);
+    return irregular != null ? irregular : HEX.formatHex(shaBytes, row * SHA_BYTES, (row + 1) * SHA_BYTES);
+  }
+
+  private static int[] ensure(int[] array, int capacity) {
+    return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+  }
+
+  private static long[] ensure(long[] array, int capacity) {
+    return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+  }
+
+  static long shaKey(String sha) {
+    if (sha.length() >= 16) {
+      try {
+        return Long.parseUnsignedLong(sha, 0, 16, 16);
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    // Not a hex object id: fall back to a 64-bit FNV-1a hash.
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < sha.length(); i++) {
+      hash ^= sha.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Collects the distinct files and languages of the rows of one window, exactly or in a sketch.
+   * Only used under the table's lock.
+   */
+  private final class FileCounter {
+    private final BitSet files;
+    private final HyperLogLog fileSketch;
+    private final BitSet languageIds = new BitSet();
+    private final HeavyHitters hotFiles = new HeavyHitters(hotFileCounters(TOP_FILES));
+
+    FileCounter(int sketchPrecision) {
+      this.files = sketchPrecision == EXACT ? new BitSet() : null;
+      this.fileSketch = sketchPrecision == EXACT ? null : new HyperLogLog(sketchPrecision);
+    }
+
+    void addFilesOf(int row) {
+      for (int i = fileStarts[row], end = i + fileCounts[row]; i < end; i++) {
+        int path = fileIds[i];
+        if (files != null) {
+          files.set(path);
+        } else {
+          fileSketch.add(pathHashes[path]);
+        }
+        if (pathLanguages[path] != UNKNOWN) {
+          languageIds.set(pathLanguages[path]);
+        }
+        hotFiles.add(path);
+      }
+    }
+
+    Totals totals(int commitCount, long linesAdded, long linesDeleted) {
+      return new Totals(commitCount, linesAdded, linesDeleted, files, fileSketch, languageIds,
+              fileChurn(hotFiles, TOP_FILES));
+    }
+  }
+
+  /**
+   * Interns strings as dense int ids.
+   */
+  private static final class Dictionary {
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    int id(String value) {
+      return ids.computeIfAbsent(value, v -> {
+        values.add(v);
+        return values.size() - 1;
+      });
+    }
+
+    int find(String value) {
+      return value == null ? UNKNOWN : ids.getOrDefault(value, UNKNOWN);
+    }
+
+    String value(int id) {
+      return id == UNKNOWN ? null : values.get(id);
+    }
+
+    int size() {
+      return values.size();
+    }
+  }
+
+  /**
+   * Open-addressing map from sha keys to rows, kept at most half full.
+   */
+  private static final class ShaIndex {
+    private long[] keys = new long[128];
+    private int[] rows = filled(128);
+    private int count;
+
+    int get(long key) {
+      int mask = keys.length - 1;
+      for (int slot = mix(key) & mask; rows[slot] != UNKNOWN; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return rows[slot];
+        }
+      }
+      return UNKNOWN;
+    }
+
+    void put(long key, int row) {
+      if ((count + 1) * 2 > keys.length) {
+        grow();
+      }
+      int mask = keys.length - 1;
+      int slot = mix(key) & mask;
+      while (rows[slot] != UNKNOWN && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (rows[slot] == UNKNOWN) {
+        count++;
+      }
+      keys[slot] = key;
+      rows[slot] = row;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldRows = rows;
+      keys = new long[oldKeys.length * 2];
+      rows = filled(oldKeys.length * 2);
+      count = 0;
+      for (int slot = 0; slot < oldKeys.length; slot++) {
+        if (oldRows[slot] != UNKNOWN) {
+          put(oldKeys[slot], oldRows[slot]);
+        }
+      }
+    }
+
+    private static int[] filled(int length) {
+      int[] array = new int[length];
+      Arrays.fill(array, UNKNOWN);
+      return array;
+    }
+
+    private static int mix(long key) {
+      long h = key * 0x9e3779b97f4a7c15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+
+}
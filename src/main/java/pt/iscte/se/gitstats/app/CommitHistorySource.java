@@ -0,0 +1,74 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.OffsetDateTime;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Backend that lists the commits of a branch together with their line statistics. Selected with
+ * {@code app.github.backend} ({@code rest} or {@code graphql}).
+ */
+public interface CommitHistorySource {
+
+  /**
+   * Streams the commits reachable from {@code branch} ({@code null} for the default branch), optionally
+   * restricted to one author login and to commits made at or after {@code since}. Order is unspecified.
+   */
+  Flux<CommitDetail> history(String accessToken,
+                             String owner,
+                             String repo,
+                             String branch,
+                             String authorLogin,
+                             OffsetDateTime since);
+
+  /**
+   * Tells whether the commits of this backend carry their {@link CommitDetail#files()}. Without them
+   * hot files cannot be ranked, and distinct files and languages come out as 0.
+   */
+  default boolean providesFiles() {
+    return true;
+  }
+
+  /**
+   * Classifier used to fill in the work types of {@link #facts}; the built-in rules by default.
+   */
+  default WorkTypeClassifier classifier() {
+    return WorkTypeClassifier.defaults();
+  }
+
+  /**
+   * Returns a {@link CommitFactTable} holding, details included, at least the commits of {@code branch}
+   * (optionally only those of {@code authorLogin}) made at or after {@code since}. The default builds a
+   * fresh table from {@link #history}; a backend that keeps tables across calls only has to fill in
+   * what is new.
+   */
+  default Mono<CommitFactTable> facts(String accessToken,
+                                      String owner,
+                                      String repo,
+                                      String branch,
+                                      String authorLogin,
+                                      OffsetDateTime since) {
+    return Mono.defer(() -> {
+      var table = new CommitFactTable();
+      return history(accessToken, owner, repo, branch, authorLogin, since)
+              .doOnNext(details -> table.recordDetails(details, classifier().classify(details)))
+              .then(Mono.just(table));
+    });
+  }
+
+
+  /**
+   * Returns a {@link CommitFactTable} in which every commit of {@code branch} made at or after
+   * {@code since} has a work type, without necessarily loading line statistics. The default loads
+   * everything through {@link #facts}.
+   */
+  default Mono<CommitFactTable> workTypes(String accessToken,
+                                          String owner,
+                                          String repo,
+                                          String branch,
+                                          OffsetDateTime since) {
+    return facts(accessToken, owner, repo, branch, null, since);
+  }
+
+}
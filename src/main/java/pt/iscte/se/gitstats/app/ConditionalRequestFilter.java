@@ -0,0 +1,185 @@
+package pt.iscte.se.gitstats.app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Turns every GitHub GET into a conditional request. The last {@code ETag}/{@code Last-Modified}
+ * seen for a (URL, token) pair is sent back as {@code If-None-Match}/{@code If-Modified-Since}, and
+ * a {@code 304 Not Modified} answer is replayed as a {@code 200} with the remembered body. GitHub
+ * does not charge 304 answers against the rate limit.
+ * <p>
+ * Remembered bodies are kept in an LRU map bounded by {@code app.github.conditional-cache.max-bytes};
+ * only bodies whose {@code Content-Length} is known and within {@code max-entry-bytes} are read and
+ * remembered. Larger bodies and bodies of unknown length are passed through unbuffered and are not
+ * revalidated.
+ */
+@Component
+public class ConditionalRequestFilter implements ExchangeFilterFunction {
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private long totalBytes;
+  private final Counter notModified;
+  private final Counter modified;
+
+  public ConditionalRequestFilter(@Value("${app.github.conditional-cache.max-bytes:67108864}") long maxBytes,
+                                  @Value("${app.github.conditional-cache.max-entry-bytes:4194304}") long maxEntryBytes,
+                                  MeterRegistry meterRegistry) {
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = maxEntryBytes;
+    this.notModified = Counter.builder("gitstats.upstream.conditional")
+            .tag("outcome", "not_modified")
+            .register(meterRegistry);
+    this.modified = Counter.builder("gitstats.upstream.conditional")
+            .tag("outcome", "modified")
+            .register(meterRegistry);
+    Gauge.builder("gitstats.upstream.conditional.bytes", this, ConditionalRequestFilter::cachedBytes)
+            .register(meterRegistry);
+    Gauge.builder("gitstats.upstream.conditional.not_modified.ratio", this, ConditionalRequestFilter::notModifiedRatio)
+            .register(meterRegistry);
+  }
+
+  private record Entry(String etag, String lastModified, MediaType contentType, byte[] body) {
+
+    long weight(String key) {
+      return body.length + 2L * key.length();
+    }
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    if (request.method() != HttpMethod.GET) {
+      return next.exchange(request);
+    }
+    var key = cacheKey(request);
+    var cached = get(key);
+    var outgoing = cached == null ? request : ClientRequest.from(request)
+            .headers(headers -> {
+              if (cached.etag() != null) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, cached.etag());
+              }
+              if (cached.lastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+              }
+            })
+            .build();
+    return next.exchange(outgoing).flatMap(response -> {
+      if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+        notModified.increment();
+        return Mono.just(replay(response, cached));
+      }
+      // Only full answers are remembered: a 202 "still computing" must not be replayed later.
+      if (response.statusCode().value() != HttpStatus.OK.value()) {
+        return Mono.just(response);
+      }
+      modified.increment();
+      var headers = response.headers().asHttpHeaders();
+      var etag = headers.getETag();
+      var lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+      var contentLength = headers.getContentLength();
+      if ((etag == null && lastModified == null) || contentLength < 0 || contentLength > maxEntryBytes) {
+        if (cached != null) {
+          remove(key);
+        }
+        return Mono.just(response);
+      }
+      return ClientResponses.readBody(response).map(bytes -> {
+        if (bytes.length <= maxEntryBytes) {
+          put(key, new Entry(etag, lastModified, headers.getContentType(), bytes));
+        }
+        return ClientResponses.withBody(response, response.statusCode(), headers, bytes);
+      });
+    });
+  }
+
+  private static ClientResponse replay(ClientResponse notModifiedResponse, Entry cached) {
+    return notModifiedResponse.mutate()
+            .statusCode(HttpStatus.OK)
+            .headers(headers -> {
+              if (cached.contentType() != null && headers.getContentType() == null) {
+                headers.setContentType(cached.contentType());
+              }
+            })
+            .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(cached.body())))
+            .build();
+  }
+
+  private synchronized Entry get(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    var previous = entries.put(key, entry);
+    if (previous != null) {
+      totalBytes -= previous.weight(key);
+    }
+    totalBytes += entry.weight(key);
+    var iterator = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      var eldest = iterator.next();
+      totalBytes -= eldest.getValue().weight(eldest.getKey());
+      iterator.remove();
+    }
+  }
+
+  private synchronized void remove(String key) {
+    var previous = entries.remove(key);
+    if (previous != null) {
+      totalBytes -= previous.weight(key);
+    }
+  }
+
+  private synchronized long cachedBytes() {
+    return totalBytes;
+  }
+
+  private double notModifiedRatio() {
+    double total = notModified.count() + modified.count();
+    return total == 0 ? 0.0 : notModified.count() / total;
+  }
+
+  /**
+   * Bodies are only replayed to the token that fetched them, so a private repository never leaks to
+   * a user without access. The token itself is hashed rather than kept as a map key.
+   */
+  private static String cacheKey(ClientRequest request) {
+    var authorization = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+    return request.url() + "|" + tokenFingerprint(authorization);
+  }
+
+  static String tokenFingerprint(String authorization) {
+    if (authorization == null) {
+      return "";
+    }
+    try {
+      var digest = MessageDigest.getInstance("SHA-256").digest(authorization.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
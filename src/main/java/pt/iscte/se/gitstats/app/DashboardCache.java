@@ -0,0 +1,111 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.CommitPeriod;
+import pt.iscte.se.gitstats.dto.ContributionStats;
+import pt.iscte.se.gitstats.dto.WorkTypeStats;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dashboard aggregates precomputed in the background by {@link WatchedRepositories}, kept per
+ * repository, period and token so interactive requests for a watched repository skip the cold
+ * computation. Only the refresher stores entries; an entry is served for {@code app.github.watch.max-age}
+ * after it was computed or until a webhook reports a change ({@link #invalidate}), and the least
+ * recently used ones are dropped beyond {@code max-entries}.
+ */
+@Component
+public class DashboardCache {
+
+  private final Duration maxAge;
+  private final Map<String, Entry> entries;
+  private final Counter hits;
+  private final Counter misses;
+
+  public DashboardCache(@Value("${app.github.watch.max-age:1h}") Duration maxAge,
+                        @Value("${app.github.watch.max-entries:1000}") int maxEntries,
+                        MeterRegistry meterRegistry) {
+    this.maxAge = maxAge;
+    this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.hits = Counter.builder("gitstats.dashboard.hits").register(meterRegistry);
+    this.misses = Counter.builder("gitstats.dashboard.misses").register(meterRegistry);
+    Gauge.builder("gitstats.dashboard.size", this, DashboardCache::size).register(meterRegistry);
+  }
+
+  private record Entry(Object value, long computedAtMillis) {}
+
+  /**
+   * Returns the precomputed contribution stats, or {@code null} when there are none young enough.
+   */
+  public ContributionStats contributionStats(String accessToken, String owner, String repo, CommitPeriod period) {
+    return get(key("contribution", accessToken, owner, repo, period), ContributionStats.class);
+  }
+
+  public void putContributionStats(String accessToken, ContributionStats stats) {
+    put(key("contribution", accessToken, stats.owner(), stats.repo(), stats.period()), stats);
+  }
+
+  /**
+   * Returns the precomputed work type stats, or {@code null} when there are none young enough.
+   */
+  public WorkTypeStats workTypeStats(String accessToken, String owner, String repo, CommitPeriod period) {
+    return get(key("work-type", accessToken, owner, repo, period), WorkTypeStats.class);
+  }
+
+  public void putWorkTypeStats(String accessToken, WorkTypeStats stats) {
+    put(key("work-type", accessToken, stats.owner(), stats.repo(), stats.period()), stats);
+  }
+
+  /**
+   * Drops every aggregate of {@code owner/repo}, whatever the kind, period and token.
+   */
+  public void invalidate(String owner, String repo) {
+    var infix = "|" + (owner + "/" + repo).toLowerCase(Locale.ROOT) + "|";
+    synchronized (entries) {
+      entries.keySet().removeIf(key -> key.contains(infix));
+    }
+  }
+
+  private <T> T get(String key, Class<T> type) {
+    synchronized (entries) {
+      var entry = entries.get(key);
+      if (entry != null && System.currentTimeMillis() - entry.computedAtMillis() < maxAge.toMillis()) {
+        hits.increment();
+        return type.cast(entry.value());
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  private void put(String key, Object value) {
+    synchronized (entries) {
+      entries.put(key, new Entry(value, System.currentTimeMillis()));
+    }
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static String key(String kind, String accessToken, String owner, String repo, CommitPeriod period) {
+    return kind + "|" + (owner + "/" + repo).toLowerCase(Locale.ROOT) + "|" + period
+            + "|" + ConditionalRequestFilter.tokenFingerprint("Bearer " + accessToken);
+  }
+
+}
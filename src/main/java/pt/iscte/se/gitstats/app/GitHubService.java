@@ -8,14 +8,18 @@ import pt.iscte.se.gitstats.dto.CommitTimeline;
 import pt.iscte.se.gitstats.dto.ContributionSlice;
 import pt.iscte.se.gitstats.dto.ContributionStats;
 import pt.iscte.se.gitstats.dto.Contributor;
+import pt.iscte.se.gitstats.dto.FileChurn;
+import pt.iscte.se.gitstats.dto.HotFiles;
 import pt.iscte.se.gitstats.dto.IssuesTimeline;
 import pt.iscte.se.gitstats.dto.IssuesTimelinePoint;
 import pt.iscte.se.gitstats.dto.LanguageStats;
 import pt.iscte.se.gitstats.dto.PullRequestsTimeline;
 import pt.iscte.se.gitstats.dto.PullRequestsTimelinePoint;
+import pt.iscte.se.gitstats.dto.RateLimitBudget;
 import pt.iscte.se.gitstats.dto.NetworkGraph;
 import pt.iscte.se.gitstats.dto.Repository;
 import pt.iscte.se.gitstats.dto.TimelinePoint;
+import pt.iscte.se.gitstats.dto.WorkType;
 import pt.iscte.se.gitstats.dto.WorkTypeStats;
 import pt.iscte.se.gitstats.NoAuthorizedClientException;
 
@@ -24,8 +28,8 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -34,33 +38,101 @@ import java.util.Objects;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.eclipse.jetty.client.HttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.client.reactive.JettyClientHttpConnector;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import static pt.iscte.se.gitstats.app.IndividualStats.urlEncode;
-
 @Service
 public class GitHubService {
 
-  private static final String GITHUB_API_BASE = "https://api.github.com";
-
   private final OAuth2AuthorizedClientService authorizedClientService;
   private final WebClient webClient;
+  private final CommitHistorySource commitHistory;
+  // Used by background refreshes; refuses any call that would dip into the interactive reserve.
+  private final WebClient watchWebClient;
+  private final CommitHistorySource watchCommitHistory;
+  private final RateLimitFilter rateLimits;
+  private final RepositorySync repositorySync;
+  private final RepositoryMetadataCache repositoryMetadata;
+  private final TimelineCache timelines;
+  private final GitHubStatistics statistics;
+  private final DashboardCache dashboards;
+  private final int distinctFilesPrecision;
 
   @Autowired
-  public GitHubService(OAuth2AuthorizedClientService authorizedClientService) {
+  public GitHubService(OAuth2AuthorizedClientService authorizedClientService,
+                       CommitDetailStore commitDetailStore,
+                       SingleFlightFilter singleFlight,
+                       ConditionalRequestFilter conditionalRequests,
+                       RateLimitFilter rateLimits,
+                       RepositorySync repositorySync,
+                       RepositoryMetadataCache repositoryMetadata,
+                       TimelineCache timelines,
+                       GitHubStatistics statistics,
+                       DashboardCache dashboards,
+                       WorkTypeClassifier workTypeClassifier,
+                       @Value("${app.github.api-base-url:https://api.github.com}") String apiBaseUrl,
+                       @Value("${app.github.backend:rest}") String backend,
+                       @Value("${app.github.commit-details-concurrency:8}") int commitDetailsConcurrency,
+                       @Value("${app.github.distinct-files.relative-error:0}") double distinctFilesRelativeError,
+                       @Value("${app.github.watch.min-remaining-fraction:0.5}") double watchReserveFraction) {
     this.authorizedClientService = Objects.requireNonNull(authorizedClientService);
-    var httpClient = new HttpClient();
+    this.rateLimits = Objects.requireNonNull(rateLimits);
+    this.repositorySync = Objects.requireNonNull(repositorySync);
+    this.repositoryMetadata = Objects.requireNonNull(repositoryMetadata);
+    this.timelines = Objects.requireNonNull(timelines);
+    this.statistics = Objects.requireNonNull(statistics);
+    this.dashboards = Objects.requireNonNull(dashboards);
+    this.distinctFilesPrecision = distinctFilesRelativeError > 0.0
+        ? HyperLogLog.precisionFor(distinctFilesRelativeError)
+        : CommitFactTable.EXACT;
+    var connector = new JettyClientHttpConnector(new HttpClient());
     this.webClient = WebClient.builder()
-      .baseUrl(GITHUB_API_BASE)
-      .clientConnector(new JettyClientHttpConnector(httpClient))
+      .baseUrl(apiBaseUrl)
+      .clientConnector(connector)
+      .filter(singleFlight)
+      .filter(conditionalRequests)
+      .filter(rateLimits)
+      .codecs(configurer -> configurer
+              .defaultCodecs()
+              .maxInMemorySize(16 * 1024 * 1024))
+      .build();
+    this.watchWebClient = WebClient.builder()
+      .baseUrl(apiBaseUrl)
+      .clientConnector(connector)
+      .filter(rateLimits.keepingReserve(watchReserveFraction))
+      .filter(singleFlight)
+      .filter(conditionalRequests)
+      .filter(rateLimits)
       .codecs(configurer -> configurer
               .defaultCodecs()
               .maxInMemorySize(16 * 1024 * 1024))
       .build();
+    this.commitHistory = commitHistory(backend, webClient, repositorySync, commitDetailStore, rateLimits,
+            workTypeClassifier, commitDetailsConcurrency);
+    this.watchCommitHistory = commitHistory(backend, watchWebClient, repositorySync, commitDetailStore, rateLimits,
+            workTypeClassifier, commitDetailsConcurrency);
+  }
+
+  private static CommitHistorySource commitHistory(String backend,
+                                                   WebClient webClient,
+                                                   RepositorySync repositorySync,
+                                                   CommitDetailStore commitDetailStore,
+                                                   RateLimitFilter rateLimits,
+                                                   WorkTypeClassifier workTypeClassifier,
+                                                   int commitDetailsConcurrency) {
+    return switch (backend) {
+      case "graphql" -> new GraphQlCommitHistorySource(webClient, workTypeClassifier);
+      case "rest" -> new RestCommitHistorySource(
+              webClient,
+              repositorySync,
+              new CommitDetailsFetcher(webClient, commitDetailStore, rateLimits, commitDetailsConcurrency),
+              workTypeClassifier);
+      default -> throw new IllegalArgumentException("Unknown app.github.backend: " + backend);
+    };
   }
 
   private String getAccessToken(OAuth2AuthenticationToken authentication) {
@@ -108,11 +180,35 @@ public class GitHubService {
         .header("Authorization", "Bearer " + accessToken)
         .retrieve()
         .bodyToFlux(JsonNode.class)
+        .doOnNext(node -> repositoryMetadata.observe(accessToken, RepositoryMetadata.fromJson(node)))
         .map(GitHubService::convertToRepository)
         .collectList()
         .block();
   }
 
+  public RateLimitBudget getRateLimitBudget(OAuth2AuthenticationToken authentication) {
+    var accessToken = getAccessToken(authentication);
+    var budget = rateLimits.budget(accessToken);
+    if (budget != null) {
+      return budget;
+    }
+    JsonNode rateNode = webClient.get()
+            .uri("/rate_limit")
+            .header("Authorization", "Bearer " + accessToken)
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .block();
+    JsonNode core = rateNode == null ? null : rateNode.path("resources").path("core");
+    if (core == null || core.isMissingNode()) {
+      return new RateLimitBudget(-1, -1, 0L);
+    }
+    return new RateLimitBudget(
+            core.path("limit").asInt(-1),
+            core.path("remaining").asInt(-1),
+            core.path("reset").asLong(0L)
+    );
+  }
+
   public List<Contributor> getContributors(OAuth2AuthenticationToken authentication,
                                            String owner,
                                            String repo) {
@@ -134,10 +230,14 @@ public class GitHubService {
     return IndividualStats.getCommitStats(
             accessToken,
             webClient,
+            commitHistory,
+            repositorySync,
+            repositoryMetadata,
             owner,
             repo,
             login,
-            CommitPeriod.ALL_TIME
+            CommitPeriod.ALL_TIME,
+            distinctFilesPrecision
     );
   }
 
@@ -149,10 +249,14 @@ public class GitHubService {
     return IndividualStats.getCommitStats(
             accessToken,
             webClient,
+            commitHistory,
+            repositorySync,
+            repositoryMetadata,
             owner,
             repo,
             login,
-            CommitPeriod.LAST_MONTH
+            CommitPeriod.LAST_MONTH,
+            distinctFilesPrecision
     );
   }
 
@@ -164,10 +268,32 @@ public class GitHubService {
     return IndividualStats.getCommitStats(
             accessToken,
             webClient,
+            commitHistory,
+            repositorySync,
+            repositoryMetadata,
             owner,
             repo,
             login,
-            CommitPeriod.LAST_WEEK
+            CommitPeriod.LAST_WEEK,
+            distinctFilesPrecision
+    );
+  }
+
+  public Map<CommitPeriod, CommitStats> getStatsForAllPeriods(OAuth2AuthenticationToken authentication,
+                                                              String owner,
+                                                              String repo,
+                                                              String login) {
+    var accessToken = getAccessToken(authentication);
+    return IndividualStats.getCommitStatsForAllPeriods(
+            accessToken,
+            webClient,
+            commitHistory,
+            repositorySync,
+            repositoryMetadata,
+            owner,
+            repo,
+            login,
+            distinctFilesPrecision
     );
   }
 
@@ -177,16 +303,8 @@ public class GitHubService {
                                       int maxCommits) {
     var accessToken = getAccessToken(authentication);
 
-    JsonNode repoNode = webClient.get()
-            .uri("/repos/{owner}/{repo}", owner, repo)
-            .header("Authorization", "Bearer " + accessToken)
-            .retrieve()
-            .bodyToMono(JsonNode.class)
-            .block();
-
-    String defaultBranch = repoNode != null
-            ? repoNode.path("default_branch").asText("main")
-            : "main";
+    var metadata = repositoryMetadata.get(accessToken, webClient, owner, repo);
+    String defaultBranch = metadata.defaultBranch() != null ? metadata.defaultBranch() : "main";
 
     List<JsonNode> branchNodes = webClient.get()
             .uri("/repos/{owner}/{repo}/branches?per_page=100", owner, repo)
@@ -354,346 +472,78 @@ public class GitHubService {
                                           String owner,
                                           String repo,
                                           String period) {
-    var accessToken = getAccessToken(authentication);
-
-    // Determine the date range based on period
-    LocalDate now = LocalDate.now(ZoneOffset.UTC);
-    LocalDate since;
-    int expectedPoints;
-
-    switch (period) {
-      case "day" -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-      }
-      case "week" -> {
-        since = now.minusWeeks(12);
-        expectedPoints = 12;
-      }
-      case "month" -> {
-        since = now.minusMonths(12);
-        expectedPoints = 12;
-      }
-      default -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-        period = "day";
-      }
-    }
+    var activity = timelineActivity(getAccessToken(authentication), owner, repo);
+    var buckets = timelineBuckets(TimeBuckets.Granularity.of(period));
+    int[] counts = activity.rollup(activity.commits(), buckets);
 
-    String sinceStr = since.atStartOfDay(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-
-    List<JsonNode> allCommits = new ArrayList<>();
-    int page = 1;
-    while (true) {
-      List<JsonNode> pageCommits = webClient.get()
-              .uri("/repos/{owner}/{repo}/commits?since={since}&per_page=100&page={page}",
-                      owner, repo, sinceStr, page)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-
-      if (pageCommits == null || pageCommits.isEmpty()) {
-        break;
-      }
-      allCommits.addAll(pageCommits);
-      if (pageCommits.size() < 100) {
-        break;
-      }
-      page++;
+    List<TimelinePoint> points = new ArrayList<>(buckets.size());
+    for (int slot = 0; slot < buckets.size(); slot++) {
+      points.add(new TimelinePoint(buckets.label(slot), counts[slot]));
     }
-
-    Map<String, Integer> counts = new LinkedHashMap<>();
-    DateTimeFormatter labelFormatter;
-    String finalPeriod = period;
-
-    switch (finalPeriod) {
-      case "day" -> labelFormatter = DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-      case "week" -> labelFormatter = DateTimeFormatter.ofPattern("'W'w", Locale.ENGLISH);
-      case "month" -> labelFormatter = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
-      default -> labelFormatter = DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-    }
-
-    for (int i = expectedPoints - 1; i >= 0; i--) {
-      LocalDate pointDate = switch (finalPeriod) {
-        case "day" -> now.minusDays(i);
-        case "week" -> now.minusWeeks(i);
-        case "month" -> now.minusMonths(i);
-        default -> now.minusDays(i);
-      };
-      String label = pointDate.format(labelFormatter);
-      counts.put(label, 0);
-    }
-
-    for (JsonNode commit : allCommits) {
-      String dateStr = commit.path("commit").path("author").path("date").asText("");
-      if (dateStr.isEmpty()) continue;
-
-      try {
-        OffsetDateTime commitDate = OffsetDateTime.parse(dateStr);
-        LocalDate localDate = commitDate.toLocalDate();
-        String label = localDate.format(labelFormatter);
-        counts.merge(label, 1, Integer::sum);
-      } catch (Exception ignored) {
-      }
-    }
-
-    List<TimelinePoint> points = counts.entrySet().stream()
-            .map(e -> new TimelinePoint(e.getKey(), e.getValue()))
-            .toList();
-
-    return new CommitTimeline(finalPeriod, points);
+    return new CommitTimeline(buckets.granularity().period(), points);
   }
 
   public IssuesTimeline getIssuesTimeline(OAuth2AuthenticationToken authentication,
                                           String owner,
                                           String repo,
                                           String period) {
-    var accessToken = getAccessToken(authentication);
-
-    // Determine the date range based on period
-    LocalDate now = LocalDate.now(ZoneOffset.UTC);
-    LocalDate since;
-    int expectedPoints;
-
-    switch (period) {
-      case "day" -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-      }
-      case "week" -> {
-        since = now.minusWeeks(12);
-        expectedPoints = 12;
-      }
-      case "month" -> {
-        since = now.minusMonths(12);
-        expectedPoints = 12;
-      }
-      default -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-        period = "day";
-      }
-    }
-
-    String sinceStr = since.toString();
-    String finalPeriod = period;
-
-    DateTimeFormatter labelFormatter = switch (finalPeriod) {
-      case "day" -> DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-      case "week" -> DateTimeFormatter.ofPattern("'W'w", Locale.ENGLISH);
-      case "month" -> DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
-      default -> DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-    };
-
-    Map<String, Integer> openedCounts = new LinkedHashMap<>();
-    Map<String, Integer> closedCounts = new LinkedHashMap<>();
-
-    for (int i = expectedPoints - 1; i >= 0; i--) {
-      LocalDate pointDate = switch (finalPeriod) {
-        case "day" -> now.minusDays(i);
-        case "week" -> now.minusWeeks(i);
-        case "month" -> now.minusMonths(i);
-        default -> now.minusDays(i);
-      };
-      String label = pointDate.format(labelFormatter);
-      openedCounts.put(label, 0);
-      closedCounts.put(label, 0);
-    }
+    var activity = timelineActivity(getAccessToken(authentication), owner, repo);
+    var buckets = timelineBuckets(TimeBuckets.Granularity.of(period));
+    int[] openedCounts = activity.rollup(activity.issuesOpened(), buckets);
+    int[] closedCounts = activity.rollup(activity.issuesClosed(), buckets);
 
     int totalOpen = 0;
     int totalClosed = 0;
-
-    for (String state : List.of("open", "closed")) {
-      int page = 1;
-      while (true) {
-        List<JsonNode> issues = webClient.get()
-                .uri("/repos/{owner}/{repo}/issues?state={state}&since={since}&per_page=100&page={page}&filter=all",
-                        owner, repo, state, sinceStr, page)
-                .header("Authorization", "Bearer " + accessToken)
-                .retrieve()
-                .bodyToFlux(JsonNode.class)
-                .collectList()
-                .block();
-
-        if (issues == null || issues.isEmpty()) {
-          break;
-        }
-
-        for (JsonNode issue : issues) {
-          if (issue.has("pull_request")) continue;
-
-          String dateStr = state.equals("open")
-                  ? issue.path("created_at").asText("")
-                  : issue.path("closed_at").asText("");
-
-          if (dateStr.isEmpty()) {
-            dateStr = issue.path("created_at").asText("");
-          }
-
-          try {
-            OffsetDateTime issueDate = OffsetDateTime.parse(dateStr);
-            LocalDate localDate = issueDate.toLocalDate();
-            String label = localDate.format(labelFormatter);
-
-            if (state.equals("open")) {
-              openedCounts.merge(label, 1, Integer::sum);
-              totalOpen++;
-            } else {
-              closedCounts.merge(label, 1, Integer::sum);
-              totalClosed++;
-            }
-          } catch (Exception ignored) {
-          }
-        }
-
-        if (issues.size() < 100) {
-          break;
-        }
-        page++;
-      }
+    List<IssuesTimelinePoint> points = new ArrayList<>(buckets.size());
+    for (int slot = 0; slot < buckets.size(); slot++) {
+      points.add(new IssuesTimelinePoint(buckets.label(slot), openedCounts[slot], closedCounts[slot]));
+      totalOpen += openedCounts[slot];
+      totalClosed += closedCounts[slot];
     }
-
-    List<IssuesTimelinePoint> points = openedCounts.keySet().stream()
-            .map(label -> new IssuesTimelinePoint(
-                    label,
-                    openedCounts.getOrDefault(label, 0),
-                    closedCounts.getOrDefault(label, 0)
-            ))
-            .toList();
-
-    return new IssuesTimeline(finalPeriod, points, totalOpen, totalClosed);
+    return new IssuesTimeline(buckets.granularity().period(), points, totalOpen, totalClosed);
   }
 
   public PullRequestsTimeline getPullRequestsTimeline(OAuth2AuthenticationToken authentication,
                                                       String owner,
                                                       String repo,
                                                       String period) {
-    var accessToken = getAccessToken(authentication);
-
-    LocalDate now = LocalDate.now(ZoneOffset.UTC);
-    LocalDate since;
-    int expectedPoints;
-
-    switch (period) {
-      case "day" -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-      }
-      case "week" -> {
-        since = now.minusWeeks(12);
-        expectedPoints = 12;
-      }
-      case "month" -> {
-        since = now.minusMonths(12);
-        expectedPoints = 12;
-      }
-      default -> {
-        since = now.minusDays(30);
-        expectedPoints = 30;
-        period = "day";
-      }
-    }
-
-    String sinceStr = since.toString();
-    String finalPeriod = period;
-
-    DateTimeFormatter labelFormatter = switch (finalPeriod) {
-      case "day" -> DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-      case "week" -> DateTimeFormatter.ofPattern("'W'w", Locale.ENGLISH);
-      case "month" -> DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
-      default -> DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
-    };
-
-    Map<String, Integer> openedCounts = new LinkedHashMap<>();
-    Map<String, Integer> mergedCounts = new LinkedHashMap<>();
-
-    for (int i = expectedPoints - 1; i >= 0; i--) {
-      LocalDate pointDate = switch (finalPeriod) {
-        case "day" -> now.minusDays(i);
-        case "week" -> now.minusWeeks(i);
-        case "month" -> now.minusMonths(i);
-        default -> now.minusDays(i);
-      };
-      String label = pointDate.format(labelFormatter);
-      openedCounts.put(label, 0);
-      mergedCounts.put(label, 0);
-    }
+    var activity = timelineActivity(getAccessToken(authentication), owner, repo);
+    var buckets = timelineBuckets(TimeBuckets.Granularity.of(period));
+    int[] openedCounts = activity.rollup(activity.pullRequestsOpened(), buckets);
+    int[] mergedCounts = activity.rollup(activity.pullRequestsMerged(), buckets);
 
     int totalOpen = 0;
     int totalMerged = 0;
-
-    int page = 1;
-    while (true) {
-      List<JsonNode> prs = webClient.get()
-              .uri("/repos/{owner}/{repo}/pulls?state=open&per_page=100&page={page}",
-                      owner, repo, page)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-
-      if (prs == null || prs.isEmpty()) break;
-
-      for (JsonNode pr : prs) {
-        String dateStr = pr.path("created_at").asText("");
-        try {
-          OffsetDateTime prDate = OffsetDateTime.parse(dateStr);
-          if (prDate.toLocalDate().isAfter(since.minusDays(1))) {
-            String label = prDate.toLocalDate().format(labelFormatter);
-            openedCounts.merge(label, 1, Integer::sum);
-            totalOpen++;
-          }
-        } catch (Exception ignored) {}
-      }
-
-      if (prs.size() < 100) break;
-      page++;
+    List<PullRequestsTimelinePoint> points = new ArrayList<>(buckets.size());
+    for (int slot = 0; slot < buckets.size(); slot++) {
+      points.add(new PullRequestsTimelinePoint(buckets.label(slot), openedCounts[slot], mergedCounts[slot]));
+      totalOpen += openedCounts[slot];
+      totalMerged += mergedCounts[slot];
     }
+    return new PullRequestsTimeline(buckets.granularity().period(), points, totalOpen, totalMerged);
+  }
 
-    page = 1;
-    while (true) {
-      List<JsonNode> prs = webClient.get()
-              .uri("/repos/{owner}/{repo}/pulls?state=closed&per_page=100&page={page}",
-                      owner, repo, page)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-
-      if (prs == null || prs.isEmpty()) break;
-
-      for (JsonNode pr : prs) {
-        String mergedAt = pr.path("merged_at").asText("");
-        if (mergedAt.isEmpty() || mergedAt.equals("null")) continue;
-
-        try {
-          OffsetDateTime mergedDate = OffsetDateTime.parse(mergedAt);
-          if (mergedDate.toLocalDate().isAfter(since.minusDays(1))) {
-            String label = mergedDate.toLocalDate().format(labelFormatter);
-            mergedCounts.merge(label, 1, Integer::sum);
-            totalMerged++;
-          }
-        } catch (Exception ignored) {}
+  /**
+   * Daily activity over the widest window any timeline granularity shows, so switching periods is
+   * served from {@link TimelineCache}.
+   */
+  private TimelineCache.DailyActivity timelineActivity(String accessToken, String owner, String repo) {
+    LocalDate widest = null;
+    for (var granularity : TimeBuckets.Granularity.values()) {
+      var since = timelineBuckets(granularity).since();
+      if (widest == null || since.isBefore(widest)) {
+        widest = since;
       }
-
-      if (prs.size() < 100) break;
-      page++;
     }
+    return timelines.get(accessToken, webClient, owner, repo, widest);
+  }
 
-    List<PullRequestsTimelinePoint> points = openedCounts.keySet().stream()
-            .map(label -> new PullRequestsTimelinePoint(
-                    label,
-                    openedCounts.getOrDefault(label, 0),
-                    mergedCounts.getOrDefault(label, 0)
-            ))
-            .toList();
-
-    return new PullRequestsTimeline(finalPeriod, points, totalOpen, totalMerged);
+  /**
+   * The last 30 days, 12 weeks or 12 months, ending with the current one.
+   */
+  private static TimeBuckets timelineBuckets(TimeBuckets.Granularity granularity) {
+    int points = granularity == TimeBuckets.Granularity.DAY ? 30 : 12;
+    return TimeBuckets.lastN(granularity, LocalDate.now(ZoneOffset.UTC), points);
   }
 
   public ContributionStats getContributionStats(OAuth2AuthenticationToken authentication,
@@ -701,22 +551,70 @@ public class GitHubService {
                                                 String repo,
                                                 CommitPeriod period) {
     var accessToken = getAccessToken(authentication);
+    var warm = dashboards.contributionStats(accessToken, owner, repo, period);
+    return warm != null ? warm : contributionStats(webClient, commitHistory, accessToken, owner, repo, period);
+  }
 
-    var contributors = webClient.get()
-        .uri("/repos/{owner}/{repo}/contributors", owner, repo)
-        .header("Authorization", "Bearer " + accessToken)
-        .retrieve()
-        .bodyToFlux(Contributor.class)
-        .collectList()
-        .block();
+  public WorkTypeStats getWorkTypeStats(OAuth2AuthenticationToken authentication,
+                                        String owner,
+                                        String repo,
+                                        CommitPeriod period) {
+    var accessToken = getAccessToken(authentication);
+    var warm = dashboards.workTypeStats(accessToken, owner, repo, period);
+    return warm != null ? warm : workTypeStats(webClient, commitHistory, accessToken, owner, repo, period);
+  }
 
-    if (contributors == null || contributors.isEmpty()) {
-      return new ContributionStats(owner, repo, period, List.of());
+  /**
+   * Recomputes the contribution and work type stats of every period and stores them in the
+   * {@link DashboardCache}, for {@link WatchedRepositories}. Every call goes through the watch client,
+   * so the refresh stops with {@link pt.iscte.se.gitstats.RateLimitExceededException} as soon as the
+   * token is down to {@code app.github.watch.min-remaining-fraction} of its limit; the periods
+   * computed so far are kept.
+   */
+  public void refreshDashboard(String accessToken, String owner, String repo) {
+    for (CommitPeriod period : CommitPeriod.values()) {
+      dashboards.putContributionStats(accessToken,
+          contributionStats(watchWebClient, watchCommitHistory, accessToken, owner, repo, period));
+      dashboards.putWorkTypeStats(accessToken,
+          workTypeStats(watchWebClient, watchCommitHistory, accessToken, owner, repo, period));
     }
+  }
 
-    List<ContributionSlice> slices = contributors.stream()
-        .map(c -> {
-          var stats = IndividualStats.getCommitStats(accessToken, webClient, owner, repo, c.login(), period);
+  private ContributionStats contributionStats(WebClient client,
+                                              CommitHistorySource history,
+                                              String accessToken,
+                                              String owner,
+                                              String repo,
+                                              CommitPeriod period) {
+    // ALL_TIME is served from GitHub's precomputed per-author totals when it has them.
+    var allTimeTotals = period == CommitPeriod.ALL_TIME
+        ? statistics.contributorTotals(accessToken, client, owner, repo).orElse(null)
+        : null;
+    List<String> logins;
+    if (allTimeTotals != null) {
+      logins = allTimeTotals.values().stream()
+          .sorted(Comparator.comparingInt(GitHubStatistics.ContributorTotals::commits).reversed())
+          .map(GitHubStatistics.ContributorTotals::login)
+          .toList();
+      // The issue and PR listing sweep only.
+      rateLimits.admit(accessToken, 2);
+    } else {
+      var contributors = contributors(client, accessToken, owner, repo);
+      if (contributors.isEmpty()) {
+        return new ContributionStats(owner, repo, period, List.of());
+      }
+      logins = contributors.stream().map(Contributor::login).toList();
+      // One listing sweep over commits, issues and PRs. Detail lookups for commits not yet in the store
+      // are admitted batch by batch as CommitDetailsFetcher makes them.
+      rateLimits.admit(accessToken, 3 + listingPages(contributors));
+    }
+    var statsByAuthor = IndividualStats.getCommitStatsByAuthor(
+        accessToken, client, history, repositorySync, repositoryMetadata, owner, repo, period, allTimeTotals, distinctFilesPrecision);
+
+    List<ContributionSlice> slices = logins.stream()
+        .filter(statsByAuthor::containsKey)
+        .map(login -> {
+          var stats = statsByAuthor.get(login);
           long lines = stats.totalLinesAdded() + stats.totalLinesDeleted();
           long issues = stats.issuesOpen() + stats.issuesClosed();
           long prs = stats.prsOpen() + stats.prsMerged();
@@ -726,7 +624,7 @@ public class GitHubService {
               50L * issues +
               200L * prs;
 
-          return new ContributionSlice(c.login(), Math.max(score, 0L));
+          return new ContributionSlice(login, Math.max(score, 0L));
         })
         .filter(slice -> slice.score() > 0L)
         .toList();
@@ -734,158 +632,77 @@ public class GitHubService {
     return new ContributionStats(owner, repo, period, slices);
   }
 
-  public WorkTypeStats getWorkTypeStats(OAuth2AuthenticationToken authentication,
-                                        String owner,
-                                        String repo,
-                                        CommitPeriod period) {
-    var accessToken = getAccessToken(authentication);
+  private WorkTypeStats workTypeStats(WebClient client,
+                                      CommitHistorySource history,
+                                      String accessToken,
+                                      String owner,
+                                      String repo,
+                                      CommitPeriod period) {
+    var since = IndividualStats.periodToSince(period);
+
+    var metadata = repositoryMetadata.get(accessToken, client, owner, repo);
+    String defaultBranch = metadata.defaultBranch() != null ? metadata.defaultBranch() : "main";
+
+    var facts = history.workTypes(accessToken, owner, repo, defaultBranch, since).block();
+    long[] counts = facts == null
+        ? new long[WorkType.values().length]
+        : facts.workTypeCounts(since == null ? Long.MIN_VALUE : since.toEpochSecond());
+    long featureCommits = counts[WorkType.FEATURE.ordinal()];
+    long bugfixCommits = counts[WorkType.BUGFIX.ordinal()];
+    long refactorCommits = counts[WorkType.REFACTOR.ordinal()];
+    long testCommits = counts[WorkType.TEST.ordinal()];
+    long documentationCommits = counts[WorkType.DOCUMENTATION.ordinal()];
 
-    OffsetDateTime since;
-    if (period == CommitPeriod.ALL_TIME) {
-      since = null;
-    } else {
-      OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
-      since = switch (period) {
-        case LAST_MONTH -> now.minusMonths(1);
-        case LAST_WEEK -> now.minusWeeks(1);
-        default -> null;
-      };
-    }
+    return new WorkTypeStats(owner, repo, period, featureCommits, bugfixCommits, refactorCommits, testCommits, documentationCommits);
+  }
 
-    JsonNode repoNode = webClient.get()
-        .uri("/repos/{owner}/{repo}", owner, repo)
-        .header("Authorization", "Bearer " + accessToken)
-        .retrieve()
-        .bodyToMono(JsonNode.class)
-        .block();
+  /**
+   * Ranks the files of the default branch changed by the most commits in {@code period}, at most
+   * {@code limit} (1 to 100) of them. Fails with {@link UnsupportedOperationException} when the
+   * selected backend has no per-file data.
+   */
+  public HotFiles getHotFiles(OAuth2AuthenticationToken authentication,
+                              String owner,
+                              String repo,
+                              CommitPeriod period,
+                              int limit) {
+    var accessToken = getAccessToken(authentication);
+    if (!commitHistory.providesFiles()) {
+      throw new UnsupportedOperationException("Hot files are not available with the graphql backend");
+    }
 
-    String defaultBranch = repoNode != null
-        ? repoNode.path("default_branch").asText("main")
-        : "main";
-
-    List<JsonNode> allCommits = new ArrayList<>();
-    int page = 1;
-    final int pageSize = 100;
-
-    while (true) {
-      StringBuilder uriBuilder = new StringBuilder(
-          "/repos/{owner}/{repo}/commits?sha=" + defaultBranch + "&per_page=" + pageSize + "&page=" + page
-      );
-      if (since != null) {
-        String sinceParam = since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-        uriBuilder.append("&since=").append(urlEncode(sinceParam));
-      }
+    var since = IndividualStats.periodToSince(period);
+    // The repository metadata and the commit listing. Detail lookups for commits not yet in the store,
+    // by far the larger share, are admitted batch by batch as CommitDetailsFetcher makes them.
+    rateLimits.admit(accessToken, 2);
 
-      List<JsonNode> pageCommits = webClient.get()
-          .uri(uriBuilder.toString(), owner, repo)
-          .header("Authorization", "Bearer " + accessToken)
-          .retrieve()
-          .bodyToFlux(JsonNode.class)
-          .collectList()
-          .block();
+    var metadata = repositoryMetadata.get(accessToken, webClient, owner, repo);
+    String defaultBranch = metadata.defaultBranch() != null ? metadata.defaultBranch() : "main";
 
-      if (pageCommits == null || pageCommits.isEmpty()) {
-        break;
-      }
-      allCommits.addAll(pageCommits);
-      if (pageCommits.size() < pageSize) {
-        break;
-      }
-      page++;
-    }
+    var facts = commitHistory.facts(accessToken, owner, repo, defaultBranch, null, since).block();
+    var files = facts == null
+        ? List.<FileChurn>of()
+        : facts.hotFiles(since == null ? Long.MIN_VALUE : since.toEpochSecond(), Math.clamp(limit, 1, 100));
 
-    long featureCommits = 0;
-    long bugfixCommits = 0;
-    long refactorCommits = 0;
-    long testCommits = 0;
-    long documentationCommits = 0;
+    return new HotFiles(owner, repo, period, files);
+  }
 
-    for (JsonNode commitNode : allCommits) {
-      String sha = commitNode.path("sha").asText(null);
-      if (sha == null || sha.isBlank()) {
-        continue;
-      }
-      JsonNode details = webClient.get()
-          .uri("/repos/{owner}/{repo}/commits/{sha}", owner, repo, sha)
-          .header("Authorization", "Bearer " + accessToken)
-          .retrieve()
-          .bodyToMono(JsonNode.class)
-          .block();
-      if (details == null) {
-        continue;
-      }
-      String message = details.path("commit").path("message").asText("");
-      String lowerMessage = message.toLowerCase(java.util.Locale.ROOT);
-      JsonNode filesNode = details.path("files");
-      boolean isDocFile = false;
-      if (filesNode != null && filesNode.isArray()) {
-        for (JsonNode fileNode : filesNode) {
-          String fileName = fileNode.path("filename").asText("");
-          String lowerName = fileName.toLowerCase(java.util.Locale.ROOT);
-          if (lowerName.contains("/docs/") || lowerName.endsWith(".md") || lowerName.endsWith(".rst") || lowerName.endsWith("readme") || lowerName.endsWith(".adoc") || lowerName.endsWith(".asciidoc") || lowerName.endsWith(".txt")) {
-            isDocFile = true;
-          }
-        }
-      }
-      boolean isDocCommit = isDocFile || lowerMessage.contains("doc") || lowerMessage.contains("readme") || lowerMessage.contains("documentation") || lowerMessage.contains("asciidoc") || lowerMessage.contains("manual");
-      boolean isMostlyTests = false;
-      int totalLinesChanged = 0;
-      int testLinesChanged = 0;
-      if (filesNode != null && filesNode.isArray()) {
-        for (JsonNode fileNode : filesNode) {
-          String fileName = fileNode.path("filename").asText("");
-          int additions = fileNode.path("additions").asInt(0);
-          int deletions = fileNode.path("deletions").asInt(0);
-          int delta = additions + deletions;
-          totalLinesChanged += delta;
-          String lowerName = fileName.toLowerCase(java.util.Locale.ROOT);
-          boolean isTestFile =
-              lowerName.contains("/test/") ||
-              lowerName.contains("/tests/") ||
-              lowerName.contains("__tests__") ||
-              lowerName.endsWith("test.java") ||
-              lowerName.endsWith(".spec.ts") ||
-              lowerName.endsWith(".test.ts") ||
-              lowerName.endsWith(".spec.js") ||
-              lowerName.endsWith(".test.js");
-          if (isTestFile) {
-            testLinesChanged += delta;
-          }
-        }
-      }
-      isMostlyTests = totalLinesChanged > 0 && testLinesChanged << 1 >= totalLinesChanged;
-      boolean looksLikeTestCommit =
-          lowerMessage.contains("test ") || lowerMessage.startsWith("test") ||
-          lowerMessage.contains("tests") || lowerMessage.contains("coverage");
-      boolean isBugfix =
-          lowerMessage.contains("fix") || lowerMessage.contains("bug") ||
-          lowerMessage.contains("hotfix") || lowerMessage.contains("patch") ||
-          lowerMessage.contains("defect") || lowerMessage.contains("error") ||
-          lowerMessage.contains("regression");
-      boolean isRefactor =
-          lowerMessage.contains("refactor") || lowerMessage.contains("cleanup") ||
-          lowerMessage.contains("tidy") || lowerMessage.contains("rename") ||
-          lowerMessage.contains("reformat") || lowerMessage.contains("style") ||
-          lowerMessage.contains("lint");
-      boolean isFeature =
-          lowerMessage.contains("feat") || lowerMessage.contains("feature") ||
-          lowerMessage.contains("add ") || lowerMessage.startsWith("add ") ||
-          lowerMessage.contains("implement") || lowerMessage.contains("introduce") ||
-          lowerMessage.contains("new ");
-      if (isDocCommit) {
-        documentationCommits++;
-      } else if (isMostlyTests || looksLikeTestCommit) {
-        testCommits++;
-      } else if (isBugfix) {
-        bugfixCommits++;
-      } else if (isRefactor) {
-        refactorCommits++;
-      } else {
-        featureCommits++;
-      }
-    }
+  private static List<Contributor> contributors(WebClient client, String accessToken, String owner, String repo) {
+    var contributors = client.get()
+        .uri("/repos/{owner}/{repo}/contributors", owner, repo)
+        .header("Authorization", "Bearer " + accessToken)
+        .retrieve()
+        .bodyToFlux(Contributor.class)
+        .collectList()
+        .block();
+    return contributors == null ? List.of() : contributors;
+  }
 
-    return new WorkTypeStats(owner, repo, period, featureCommits, bugfixCommits, refactorCommits, testCommits, documentationCommits);
+  /**
+   * Rough number of commit listing pages in the history, from its contributors' commit counts.
+   */
+  private static int listingPages(List<Contributor> contributors) {
+    return contributors.stream().mapToInt(Contributor::contributions).sum() / 100;
   }
 
 }
@@ -0,0 +1,134 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads the per-author totals GitHub precomputes in {@code /repos/{owner}/{repo}/stats/contributors},
+ * so all-time commit counts and line totals take one call instead of one per commit.
+ * <p>
+ * GitHub answers {@code 202 Accepted} while it computes the statistics; the call is then retried after
+ * {@code app.github.statistics.first-backoff}, doubling each time, up to {@code max-attempts} calls.
+ * The totals are reported as unavailable (and callers fall back to the per-commit path) when GitHub is
+ * still computing after that, when it answers with an error status, when the repository is empty, or
+ * when it has 10,000 commits or more, for which GitHub reports every addition and deletion as 0.
+ */
+@Component
+public class GitHubStatistics {
+
+  // GitHub stops counting lines from this many commits on.
+  private static final int LINE_STATS_COMMIT_LIMIT = 10_000;
+
+  private final int maxAttempts;
+  private final Duration firstBackoff;
+
+  public GitHubStatistics(@Value("${app.github.statistics.max-attempts:4}") int maxAttempts,
+                          @Value("${app.github.statistics.first-backoff:1s}") Duration firstBackoff) {
+    this.maxAttempts = maxAttempts;
+    this.firstBackoff = firstBackoff;
+  }
+
+  /**
+   * All-time totals of one author on the default branch.
+   */
+  public record ContributorTotals(String login, int commits, long linesAdded, long linesDeleted) {}
+
+  /**
+   * Returns the all-time totals of every author GitHub attributes commits to (at most its top 100),
+   * keyed by login, or nothing when GitHub cannot provide them.
+   */
+  public Optional<Map<String, ContributorTotals>> contributorTotals(String accessToken,
+                                                                   WebClient webClient,
+                                                                   String owner,
+                                                                   String repo) {
+    var totals = fetchContributors(accessToken, webClient, owner, repo, 1).block();
+    if (totals == null || totals.isEmpty()) {
+      return Optional.empty();
+    }
+    long commits = 0L;
+    long lines = 0L;
+    Map<String, ContributorTotals> byLogin = new HashMap<>();
+    for (ContributorTotals author : totals) {
+      commits += author.commits();
+      lines += author.linesAdded() + author.linesDeleted();
+      if (author.login() != null) {
+        byLogin.merge(author.login(), author, (a, b) -> new ContributorTotals(
+                a.login(), a.commits() + b.commits(), a.linesAdded() + b.linesAdded(), a.linesDeleted() + b.linesDeleted()));
+      }
+    }
+    if (commits >= LINE_STATS_COMMIT_LIMIT && lines == 0L) {
+      return Optional.empty();
+    }
+    return Optional.of(byLogin);
+  }
+
+  private Mono<List<ContributorTotals>> fetchContributors(String accessToken,
+                                                          WebClient webClient,
+                                                          String owner,
+                                                          String repo,
+                                                          int attempt) {
+    return webClient.get()
+            .uri("/repos/{owner}/{repo}/stats/contributors", owner, repo)
+            .header("Authorization", "Bearer " + accessToken)
+            .exchangeToMono(response -> {
+              int status = response.statusCode().value();
+              if (status == HttpStatus.ACCEPTED.value()) {
+                if (attempt >= maxAttempts) {
+                  return response.releaseBody().then(Mono.empty());
+                }
+                return response.releaseBody()
+                        .then(Mono.delay(firstBackoff.multipliedBy(1L << (attempt - 1))))
+                        .then(fetchContributors(accessToken, webClient, owner, repo, attempt + 1));
+              }
+              if (status == HttpStatus.NO_CONTENT.value() || response.statusCode().isError()) {
+                return response.releaseBody().then(Mono.empty());
+              }
+              return StreamingJsonDecoder.decodeArray(response.bodyToFlux(DataBuffer.class), ContributorProjection::new)
+                      .collectList();
+            });
+  }
+
+  /**
+   * Reads one element of {@code /stats/contributors}, summing its weeks.
+   */
+  private static final class ContributorProjection implements JsonProjection<ContributorTotals> {
+    private String login;
+    private int commits;
+    private long linesAdded;
+    private long linesDeleted;
+
+    @Override
+    public void value(String path, JsonParser parser) throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return;
+      }
+      switch (path) {
+        case "author.login" -> login = parser.getText();
+        case "total" -> commits = parser.getIntValue();
+        case "weeks[].a" -> linesAdded += parser.getLongValue();
+        case "weeks[].d" -> linesDeleted += parser.getLongValue();
+        default -> {
+        }
+      }
+    }
+
+    @Override
+    public ContributorTotals build() {
+      return new ContributorTotals(login, commits, linesAdded, linesDeleted);
+    }
+  }
+
+}
@@ -0,0 +1,171 @@
+package pt.iscte.se.gitstats.app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies GitHub {@code push}, {@code issues} and {@code pull_request} webhook deliveries to what is
+ * already cached, so dashboards of repositories with a webhook stay fresh without waiting for a TTL.
+ * <p>
+ * Commits, issues and pull requests are written in place into the logs {@link RepositorySync} has
+ * loaded, and a deleted or transferred issue is removed from them; the aggregates derived from them (the {@link TimelineCache} and {@link DashboardCache}
+ * entries of that repository only) are dropped, and watched dashboards of the repository are
+ * refreshed at the next tick. Deliveries for repositories nobody has opened are ignored: there is
+ * nothing to update and no token to fetch with.
+ * <p>
+ * Deliveries are authenticated with the {@code X-Hub-Signature-256} HMAC of their body under
+ * {@code app.github.webhook.secret}; without a secret the receiver is disabled.
+ */
+@Component
+public class GitHubWebhooks {
+
+  private static final String SIGNATURE_PREFIX = "sha256=";
+
+  private final RepositorySync repositorySync;
+  private final TimelineCache timelines;
+  private final DashboardCache dashboards;
+  private final WatchedRepositories watchedRepositories;
+  private final byte[] secret;
+
+  public GitHubWebhooks(RepositorySync repositorySync,
+                        TimelineCache timelines,
+                        DashboardCache dashboards,
+                        WatchedRepositories watchedRepositories,
+                        @Value("${app.github.webhook.secret:}") String secret) {
+    this.repositorySync = Objects.requireNonNull(repositorySync);
+    this.timelines = Objects.requireNonNull(timelines);
+    this.dashboards = Objects.requireNonNull(dashboards);
+    this.watchedRepositories = Objects.requireNonNull(watchedRepositories);
+    this.secret = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public boolean isEnabled() {
+    return secret.length > 0;
+  }
+
+  /**
+   * Checks {@code signature}, the {@code X-Hub-Signature-256} header, against {@code body} in constant
+   * time.
+   */
+  public boolean verify(byte[] body, String signature) {
+    return isEnabled() && signatureMatches(secret, body, signature);
+  }
+
+  static boolean signatureMatches(byte[] secret, byte[] body, String signature) {
+    if (signature == null || !signature.startsWith(SIGNATURE_PREFIX)) {
+      return false;
+    }
+    byte[] expected = hmacSha256(secret, body);
+    byte[] actual;
+    try {
+      actual = HexFormat.of().parseHex(signature, SIGNATURE_PREFIX.length(), signature.length());
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return MessageDigest.isEqual(expected, actual);
+  }
+
+  /**
+   * Applies a verified delivery of {@code event} and returns what became of it: {@code applied},
+   * {@code not-loaded} (no cached data for the repository) or {@code ignored} (another event type).
+   */
+  public String handle(String event, JsonNode payload) {
+    var fullName = payload.path("repository").path("full_name").asText("");
+    int slash = fullName.indexOf('/');
+    if (slash <= 0 || event == null) {
+      return "ignored";
+    }
+    var owner = fullName.substring(0, slash);
+    var repo = fullName.substring(slash + 1);
+    boolean touched;
+    switch (event) {
+      case "push" -> {
+        var ref = payload.path("ref").asText("");
+        if (!ref.startsWith("refs/heads/")) {
+          return "ignored";
+        }
+        var branch = ref.substring("refs/heads/".length());
+        boolean defaultBranch = branch.equals(payload.path("repository").path("default_branch").asText(null));
+        // A deleted branch loses its commits just like a forced push rewrites them.
+        boolean forced = payload.path("forced").asBoolean(false) || payload.path("deleted").asBoolean(false);
+        touched = repositorySync.applyPush(owner, repo, branch, defaultBranch, forced, pushedCommits(payload));
+      }
+      case "issues", "pull_request" -> {
+        boolean pullRequest = event.equals("pull_request");
+        var item = payload.path(pullRequest ? "pull_request" : "issue");
+        touched = switch (payload.path("action").asText("")) {
+          // The issue no longer belongs to the repository and will not be listed again.
+          case "deleted", "transferred" -> repositorySync.removeIssue(owner, repo, item.path("number").asInt(0));
+          default -> repositorySync.applyIssue(owner, repo, issueRow(item, pullRequest));
+        };
+      }
+      default -> {
+        return "ignored";
+      }
+    }
+    timelines.invalidate(owner, repo);
+    dashboards.invalidate(owner, repo);
+    watchedRepositories.changed(owner, repo);
+    return touched ? "applied" : "not-loaded";
+  }
+
+  /**
+   * Reads the commits of a {@code push} payload. Their {@code timestamp} stands for both dates until
+   * the next listing refresh brings the exact committer date.
+   */
+  static List<RepositorySync.PushedCommit> pushedCommits(JsonNode payload) {
+    List<RepositorySync.PushedCommit> commits = new ArrayList<>();
+    for (JsonNode commit : payload.path("commits")) {
+      var sha = commit.path("id").asText("");
+      if (sha.isBlank()) {
+        continue;
+      }
+      long date = RepositorySync.epochSeconds(commit.path("timestamp").asText(null));
+      var login = commit.path("author").path("username").asText(null);
+      commits.add(new RepositorySync.PushedCommit(
+              new RepositorySync.CommitRow(sha, login, date, date),
+              commit.path("message").asText("")));
+    }
+    return commits;
+  }
+
+  /**
+   * Reads the {@code issue} of an {@code issues} payload or the {@code pull_request} of a
+   * {@code pull_request} payload as an {@link RepositorySync.IssueRow}.
+   */
+  static RepositorySync.IssueRow issueRow(JsonNode item, boolean pullRequest) {
+    return new RepositorySync.IssueRow(
+            item.path("number").asInt(0),
+            item.path("user").path("login").asText(null),
+            pullRequest,
+            "open".equals(item.path("state").asText(null)),
+            RepositorySync.epochSeconds(item.path("created_at").asText(null)),
+            RepositorySync.epochSeconds(item.path("closed_at").asText(null)),
+            RepositorySync.epochSeconds(item.path("merged_at").asText(null)),
+            RepositorySync.epochSeconds(item.path("updated_at").asText(null)));
+  }
+
+  static byte[] hmacSha256(byte[] key, byte[] body) {
+    try {
+      var mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(key, "HmacSHA256"));
+      return mac.doFinal(body);
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new IllegalStateException("HmacSHA256 is not available", e);
+    }
+  }
+
+}
@@ -0,0 +1,165 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * GraphQL v4 implementation of {@link CommitHistorySource}. The {@code history} connection returns up
+ * to 100 commits per call with their additions, deletions and changed file count already attached,
+ * which removes the per-commit {@code /commits/{sha}} lookups of the REST backend. GraphQL does not
+ * expose file names, so commits from this backend carry no {@link CommitDetail#files()}: hot files are
+ * rejected, and distinct files and languages are reported as 0.
+ * <p>
+ * Nothing is kept between calls. Each {@link #facts} builds a fresh {@link CommitFactTable} and pages
+ * the requested history again, without the per-branch tables and watermarks of {@link RepositorySync}
+ * that the REST backend fills in incrementally.
+ */
+public final class GraphQlCommitHistorySource implements CommitHistorySource {
+
+  private static final int PAGE_SIZE = 100;
+
+  private static final String HISTORY_QUERY = """
+          query($owner: String!, $name: String!, $expression: String!, $since: GitTimestamp,
+                $author: CommitAuthor, $cursor: String, $pageSize: Int!) {
+            repository(owner: $owner, name: $name) {
+              object(expression: $expression) {
+                ... on Commit {
+                  history(first: $pageSize, after: $cursor, since: $since, author: $author) {
+                    pageInfo { hasNextPage endCursor }
+                    nodes {
+                      oid
+                      message
+                      additions
+                      deletions
+                      changedFilesIfAvailable
+                      author { date user { login } }
+                    }
+                  }
+                }
+              }
+            }
+          }""";
+
+  private static final String USER_ID_QUERY = """
+          query($login: String!) {
+            user(login: $login) { id }
+          }""";
+
+  private final WebClient webClient;
+  private final WorkTypeClassifier classifier;
+
+  public GraphQlCommitHistorySource(WebClient webClient) {
+    this(webClient, WorkTypeClassifier.defaults());
+  }
+
+  public GraphQlCommitHistorySource(WebClient webClient, WorkTypeClassifier classifier) {
+    this.webClient = Objects.requireNonNull(webClient, "webClient must not be null");
+    this.classifier = Objects.requireNonNull(classifier, "classifier must not be null");
+  }
+
+  @Override
+  public boolean providesFiles() {
+    return false;
+  }
+
+  @Override
+  public WorkTypeClassifier classifier() {
+    return classifier;
+  }
+
+  @Override
+  public Flux<CommitDetail> history(String accessToken,
+                                    String owner,
+                                    String repo,
+                                    String branch,
+                                    String authorLogin,
+                                    OffsetDateTime since) {
+    Objects.requireNonNull(accessToken, "accessToken must not be null");
+    Mono<Optional<String>> authorId = authorLogin == null
+            ? Mono.just(Optional.empty())
+            : query(accessToken, USER_ID_QUERY, Map.of("login", authorLogin))
+                    .map(data -> Optional.ofNullable(data.path("user").path("id").asText(null)));
+    return authorId.flatMapMany(id -> {
+      if (authorLogin != null && id.isEmpty()) {
+        return Flux.empty();
+      }
+      Map<String, Object> variables = new HashMap<>();
+      variables.put("owner", owner);
+      variables.put("name", repo);
+      variables.put("expression", branch == null || branch.isBlank() ? "HEAD" : branch);
+      variables.put("pageSize", PAGE_SIZE);
+      variables.put("since", since == null ? null : since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+      variables.put("author", id.map(value -> Map.of("id", value)).orElse(null));
+      return historyPage(accessToken, variables, null)
+              .expand(page -> page.hasNextPage()
+                      ? historyPage(accessToken, variables, page.endCursor())
+                      : Mono.empty())
+              .flatMapIterable(HistoryPage::commits);
+    });
+  }
+
+  private record HistoryPage(List<CommitDetail> commits, boolean hasNextPage, String endCursor) {}
+
+  private Mono<HistoryPage> historyPage(String accessToken, Map<String, Object> variables, String cursor) {
+    Map<String, Object> pageVariables = new HashMap<>(variables);
+    pageVariables.put("cursor", cursor);
+    return query(accessToken, HISTORY_QUERY, pageVariables).map(data -> {
+      var history = data.path("repository").path("object").path("history");
+      List<CommitDetail> commits = new ArrayList<>();
+      for (JsonNode node : history.path("nodes")) {
+        var userNode = node.path("author").path("user");
+        commits.add(new CommitDetail(
+                node.path("oid").asText(""),
+                userNode.isNull() ? null : userNode.path("login").asText(null),
+                node.path("author").path("date").asText(null),
+                node.path("message").asText(""),
+                node.path("additions").asInt(0),
+                node.path("deletions").asInt(0),
+                node.path("changedFilesIfAvailable").asInt(0),
+                List.of()
+        ));
+      }
+      var pageInfo = history.path("pageInfo");
+      return new HistoryPage(
+              commits,
+              pageInfo.path("hasNextPage").asBoolean(false),
+              pageInfo.path("endCursor").asText(null)
+      );
+    });
+  }
+
+  private Mono<JsonNode> query(String accessToken, String query, Map<String, Object> variables) {
+    Map<String, Object> body = new HashMap<>();
+    body.put("query", query);
+    body.put("variables", variables);
+    return webClient.post()
+            .uri("/graphql")
+            .header("Authorization", "Bearer " + accessToken)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(body)
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .handle((response, sink) -> {
+              var errors = response.path("errors");
+              if (errors.isArray() && !errors.isEmpty()) {
+                sink.error(new IllegalStateException(
+                        "GitHub GraphQL error: " + errors.get(0).path("message").asText("unknown")));
+                return;
+              }
+              sink.next(response.path("data"));
+            });
+  }
+
+}
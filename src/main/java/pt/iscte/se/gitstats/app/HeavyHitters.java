@@ -0,0 +1,132 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent int keys of a stream in a fixed number of counters (the Space-Saving
+ * algorithm). A key that has a counter is counted; any other key takes over the smallest counter and
+ * inherits its count, which is remembered as the new key's possible overcount. Every key seen more
+ * than {@code total / capacity} times is guaranteed a counter, and a counted key's count is never
+ * below its true count nor above it by more than its {@link Entry#error() error}.
+ * <p>
+ * Counters are kept in a min-heap, so each {@link #add} costs a hash lookup and a few swaps. Not
+ * thread-safe.
+ */
+public final class HeavyHitters {
+
+  /**
+   * A counted key, {@code count} possibly overstating its true count by at most {@code error}.
+   */
+  public record Entry(int key, long count, long error) {}
+
+  private final int capacity;
+  private final int[] keys;
+  private final long[] counts;
+  private final long[] errors;
+  private final Map<Integer, Integer> slots = new HashMap<>();
+  private int size;
+
+  public HeavyHitters(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.keys = new int[capacity];
+    this.counts = new long[capacity];
+    this.errors = new long[capacity];
+  }
+
+  public void add(int key) {
+    var slot = slots.get(key);
+    if (slot != null) {
+      counts[slot]++;
+      siftDown(slot);
+    } else if (size < capacity) {
+      int added = size++;
+      keys[added] = key;
+      counts[added] = 1L;
+      errors[added] = 0L;
+      slots.put(key, added);
+      siftUp(added);
+    } else {
+      // Evict the smallest counter, at the root.
+      slots.remove(keys[0]);
+      keys[0] = key;
+      errors[0] = counts[0];
+      counts[0]++;
+      slots.put(key, 0);
+      siftDown(0);
+    }
+  }
+
+  /**
+   * Returns at most {@code n} counted keys, highest count first (ties by key).
+   */
+  public List<Entry> top(int n) {
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.<Integer>comparingLong(i -> counts[i]).reversed().thenComparingInt(i -> keys[i]));
+    List<Entry> top = new ArrayList<>(Math.min(n, size));
+    for (int i = 0; i < size && i < n; i++) {
+      int slot = order[i];
+      top.add(new Entry(keys[slot], counts[slot], errors[slot]));
+    }
+    return top;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      int parent = (slot - 1) >>> 1;
+      if (counts[parent] <= counts[slot]) {
+        return;
+      }
+      swap(slot, parent);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      int smallest = slot;
+      int left = 2 * slot + 1;
+      int right = left + 1;
+      if (left < size && counts[left] < counts[smallest]) {
+        smallest = left;
+      }
+      if (right < size && counts[right] < counts[smallest]) {
+        smallest = right;
+      }
+      if (smallest == slot) {
+        return;
+      }
+      swap(slot, smallest);
+      slot = smallest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    int key = keys[a];
+    long count = counts[a];
+    long error = errors[a];
+    keys[a] = keys[b];
+    counts[a] = counts[b];
+    errors[a] = errors[b];
+    keys[b] = key;
+    counts[b] = count;
+    errors[b] = error;
+    slots.put(keys[a], a);
+    slots.put(keys[b], b);
+  }
+
+}
@@ -0,0 +1,128 @@
+package pt.iscte.se.gitstats.app;
+
+/**
+ * Estimates the number of distinct values added to it in a fixed {@code 2^precision} bytes, whatever
+ * that number is. Each value is hashed to 64 bits: the first {@code precision} bits pick a register,
+ * which keeps the longest run of leading zeros seen in the remaining bits. The standard error of the
+ * estimate is about {@code 1.04 / sqrt(2^precision)}; small counts fall back to linear counting and
+ * are close to exact.
+ * <p>
+ * Two sketches of the same precision {@link #merge merge} into the sketch of the union of their
+ * values, so counts of several windows or contributors combine without going back to the values.
+ * Not thread-safe.
+ */
+public final class HyperLogLog {
+
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Returns the smallest precision whose standard error is at most {@code relativeError}, within
+   * {@link #MIN_PRECISION} and {@link #MAX_PRECISION}.
+   */
+  public static int precisionFor(double relativeError) {
+    if (!(relativeError > 0.0)) {
+      throw new IllegalArgumentException("relativeError must be positive");
+    }
+    double registers = Math.pow(1.04 / relativeError, 2);
+    int precision = 64 - Long.numberOfLeadingZeros((long) Math.ceil(registers) - 1);
+    return Math.clamp(precision, MIN_PRECISION, MAX_PRECISION);
+  }
+
+  /**
+   * A 64-bit hash of {@code value} suited to {@link #add(long)}: FNV-1a over its characters, finished
+   * with the MurmurHash3 mixer so every output bit depends on every input bit.
+   */
+  public static long hash(CharSequence value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  public void add(CharSequence value) {
+    add(hash(value));
+  }
+
+  /**
+   * Adds a value by its 64-bit hash, see {@link #hash(CharSequence)}.
+   */
+  public void add(long hash) {
+    int register = (int) (hash >>> (64 - precision));
+    // The guard bit bounds the run of zeros when the remaining bits are all 0.
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  /**
+   * Folds {@code other} into this sketch, which then estimates the union of both.
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("cannot merge sketches of precision " + precision + " and " + other.precision);
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0.0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += Double.longBitsToDouble((1023L - register) << 52);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double raw = alpha(m) * m * m / sum;
+    if (raw <= 2.5 * m && zeros > 0) {
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(raw);
+  }
+
+  public int precision() {
+    return precision;
+  }
+
+  /**
+   * The standard error of {@link #estimate()} relative to the true count.
+   */
+  public double relativeError() {
+    return 1.04 / Math.sqrt(registers.length);
+  }
+
+  private static double alpha(int m) {
+    return switch (m) {
+      case 16 -> 0.673;
+      case 32 -> 0.697;
+      case 64 -> 0.709;
+      default -> 0.7213 / (1.0 + 1.079 / m);
+    };
+  }
+
+}
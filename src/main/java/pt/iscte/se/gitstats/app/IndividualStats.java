@@ -7,86 +7,168 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.web.reactive.function.client.WebClient;
 
 public enum IndividualStats {;
 
   public static CommitStats getCommitStats(String accessToken,
                                            WebClient webClient,
+                                           CommitHistorySource commitHistory,
+                                           RepositorySync repositorySync,
+                                           RepositoryMetadataCache repositoryMetadata,
                                            String owner,
                                            String repo,
                                            String login,
-                                           CommitPeriod period) {
+                                           CommitPeriod period,
+                                           int sketchPrecision) {
     Objects.requireNonNull(accessToken, "accessToken must not be null");
     Objects.requireNonNull(webClient, "webClient must not be null");
+    Objects.requireNonNull(commitHistory, "commitHistory must not be null");
+    Objects.requireNonNull(repositorySync, "repositorySync must not be null");
+    Objects.requireNonNull(repositoryMetadata, "repositoryMetadata must not be null");
     var since = periodToSince(period);
-    var defaultBranch = fetchDefaultBranch(accessToken, webClient, owner, repo);
-    var commits = fetchCommitsForContributor(
-            accessToken, webClient, owner, repo, login, since, defaultBranch
-    );
-    var commitCount = new AtomicInteger();
-    var totalAdded = new AtomicLong();
-    var totalDeleted = new AtomicLong();
-    var distinctFiles = new HashSet<String>();
+    var defaultBranch = repositoryMetadata.get(accessToken, webClient, owner, repo).defaultBranch();
+    var facts = commitHistory.facts(accessToken, owner, repo, defaultBranch, login, since).block();
+    var totals = facts == null ? null : facts.totals(epochSeconds(since), login, sketchPrecision);
+    var issuePrStats = collectIssueAndPrStats(accessToken, webClient, repositorySync, owner, repo, login, since).get(login);
+    return toCommitStats(login, period, totals, issuePrStats);
+  }
 
-    for (JsonNode commit : commits) {
-      var sha = commit.path("sha").asText(null);
-      if (sha == null || sha.isBlank()) {
-        continue;
-      }
-      var details = fetchCommitDetails(accessToken, webClient, owner, repo, sha);
-      if (details == null) {
-        continue;
-      }
-      commitCount.incrementAndGet();
-      var statsNode = details.get("stats");
-      if (statsNode != null && !statsNode.isNull()) {
-        int added = statsNode.path("additions").asInt(0);
-        int deleted = statsNode.path("deletions").asInt(0);
-        totalAdded.addAndGet(added);
-        totalDeleted.addAndGet(deleted);
+  /**
+   * Computes the {@link CommitStats} of {@code login} for every {@link CommitPeriod} at once. The
+   * windows are nested, so the whole history is loaded once and each commit, issue and pull request
+   * is counted into every window it falls in during a single pass.
+   */
+  public static Map<CommitPeriod, CommitStats> getCommitStatsForAllPeriods(String accessToken,
+                                                                           WebClient webClient,
+                                                                           CommitHistorySource commitHistory,
+                                                                           RepositorySync repositorySync,
+                                                                           RepositoryMetadataCache repositoryMetadata,
+                                                                           String owner,
+                                                                           String repo,
+                                                                           String login,
+                                                                           int sketchPrecision) {
+    Objects.requireNonNull(accessToken, "accessToken must not be null");
+    Objects.requireNonNull(webClient, "webClient must not be null");
+    Objects.requireNonNull(commitHistory, "commitHistory must not be null");
+    Objects.requireNonNull(repositorySync, "repositorySync must not be null");
+    Objects.requireNonNull(repositoryMetadata, "repositoryMetadata must not be null");
+    var periods = CommitPeriod.values();
+    long[] sinces = new long[periods.length];
+    for (int i = 0; i < periods.length; i++) {
+      sinces[i] = epochSeconds(periodToSince(periods[i]));
+    }
+    // ALL_TIME contains the other windows.
+    var widest = periodToSince(CommitPeriod.ALL_TIME);
+    var defaultBranch = repositoryMetadata.get(accessToken, webClient, owner, repo).defaultBranch();
+    var facts = commitHistory.facts(accessToken, owner, repo, defaultBranch, login, widest).block();
+    var totals = facts == null ? new CommitFactTable.Totals[periods.length] : facts.totals(sinces, login, sketchPrecision);
+
+    IssuePrStats[] issuePrStats = new IssuePrStats[periods.length];
+    for (int i = 0; i < periods.length; i++) {
+      issuePrStats[i] = new IssuePrStats();
+    }
+    for (RepositorySync.IssueRow row : repositorySync.issues(accessToken, webClient, owner, repo, login, widest)) {
+      for (int i = 0; i < periods.length; i++) {
+        issuePrStats[i].count(row, sinces[i]);
       }
-      var filesNode = details.get("files");
-      if (filesNode != null && filesNode.isArray()) {
-        filesNode.forEach(fileNode -> {
-          var fileName = fileNode.path("filename").asText(null);
-          if (fileName != null && !fileName.isBlank()) {
-            distinctFiles.add(fileName);
-          }
-        });
+    }
+
+    Map<CommitPeriod, CommitStats> stats = new EnumMap<>(CommitPeriod.class);
+    for (int i = 0; i < periods.length; i++) {
+      stats.put(periods[i], toCommitStats(login, periods[i], totals[i], issuePrStats[i]));
+    }
+    return stats;
+  }
+
+  /**
+   * Computes the {@link CommitStats} of every author of the repository in one sweep: the commit,
+   * issue and pull request listings are paged once and grouped by author login, instead of once per
+   * contributor as {@link #getCommitStats} would. Authors without a GitHub account are skipped.
+   * <p>
+   * For {@link CommitPeriod#ALL_TIME}, {@code allTimeTotals} (GitHub's precomputed per-author totals,
+   * {@code null} when unavailable) replaces the commit history: commit counts and line totals come from
+   * it, and the file fields, which it cannot provide, are 0.
+   */
+  public static Map<String, CommitStats> getCommitStatsByAuthor(String accessToken,
+                                                                WebClient webClient,
+                                                                CommitHistorySource commitHistory,
+                                                                RepositorySync repositorySync,
+                                                                RepositoryMetadataCache repositoryMetadata,
+                                                                String owner,
+                                                                String repo,
+                                                                CommitPeriod period,
+                                                                Map<String, GitHubStatistics.ContributorTotals> allTimeTotals,
+                                                                int sketchPrecision) {
+    Objects.requireNonNull(accessToken, "accessToken must not be null");
+    Objects.requireNonNull(webClient, "webClient must not be null");
+    Objects.requireNonNull(commitHistory, "commitHistory must not be null");
+    Objects.requireNonNull(repositorySync, "repositorySync must not be null");
+    Objects.requireNonNull(repositoryMetadata, "repositoryMetadata must not be null");
+    var since = periodToSince(period);
+    Map<String, CommitFactTable.Totals> totalsByAuthor;
+    if (period == CommitPeriod.ALL_TIME && allTimeTotals != null) {
+      totalsByAuthor = new HashMap<>();
+      for (GitHubStatistics.ContributorTotals totals : allTimeTotals.values()) {
+        totalsByAuthor.put(totals.login(), new CommitFactTable.Totals(
+                totals.commits(), totals.linesAdded(), totals.linesDeleted()));
       }
+    } else {
+      var defaultBranch = repositoryMetadata.get(accessToken, webClient, owner, repo).defaultBranch();
+      var facts = commitHistory.facts(accessToken, owner, repo, defaultBranch, null, since).block();
+      totalsByAuthor = facts == null ? null : facts.totalsByAuthor(epochSeconds(since), sketchPrecision);
+    }
+    var issuePrStats = collectIssueAndPrStats(accessToken, webClient, repositorySync, owner, repo, null, since);
+
+    Set<String> authors = new HashSet<>(issuePrStats.keySet());
+    if (totalsByAuthor != null) {
+      authors.addAll(totalsByAuthor.keySet());
     }
-    long totalLinesAdded = totalAdded.get();
-    long totalLinesDeleted = totalDeleted.get();
+    Map<String, CommitStats> statsByAuthor = new HashMap<>();
+    for (String author : authors) {
+      var totals = totalsByAuthor == null ? null : totalsByAuthor.get(author);
+      statsByAuthor.put(author, toCommitStats(author, period, totals, issuePrStats.get(author)));
+    }
+    return statsByAuthor;
+  }
+
+  private static CommitStats toCommitStats(String login,
+                                           CommitPeriod period,
+                                           CommitFactTable.Totals totals,
+                                           IssuePrStats issuePrStats) {
+    if (totals == null) {
+      totals = new CommitFactTable.Totals(0, 0L, 0L);
+    }
+    if (issuePrStats == null) {
+      issuePrStats = new IssuePrStats();
+    }
+    long totalLinesAdded = totals.linesAdded();
+    long totalLinesDeleted = totals.linesDeleted();
     long netLinesChanged = totalLinesAdded - totalLinesDeleted;
 
     double avgCommitSizeLines =
-            commitCount.get() == 0 ? 0.0 : (double) (totalLinesAdded + totalLinesDeleted) / commitCount.get();
-    int distinctFilesTouched = distinctFiles.size();
-    int topFilesModifiedCount = Math.min(5, distinctFilesTouched);
-    int mainLanguagesCount = estimateLanguagesCount(distinctFiles);
-    var issuePrStats = collectIssueAndPrStats(accessToken, webClient, owner, repo, login, since);
+            totals.commitCount() == 0 ? 0.0 : (double) (totalLinesAdded + totalLinesDeleted) / totals.commitCount();
+    int distinctFilesTouched = totals.distinctFiles();
+    int topFilesModifiedCount = totals.topFiles().size();
+    int mainLanguagesCount = totals.distinctLanguages();
     return new CommitStats(
             login,
             period,
-            commitCount.get(),
+            totals.commitCount(),
             avgCommitSizeLines,
             totalLinesAdded,
             totalLinesDeleted,
             netLinesChanged,
             distinctFilesTouched,
             topFilesModifiedCount,
+            totals.topFiles(),
             mainLanguagesCount,
             issuePrStats.issuesOpened,
             issuePrStats.issuesClosed,
@@ -96,7 +178,10 @@ public enum IndividualStats {;
     );
   }
 
-  private static OffsetDateTime periodToSince(CommitPeriod period) {
+  /**
+   * Returns the start of the window of {@code period}, {@code null} for all time.
+   */
+  static OffsetDateTime periodToSince(CommitPeriod period) {
     if (period == CommitPeriod.ALL_TIME) {
       return null;
     }
@@ -108,228 +193,72 @@ public enum IndividualStats {;
     };
   }
 
-  private static List<JsonNode> fetchCommitsForContributor(String accessToken,
-                                                           WebClient webClient,
-                                                           String owner,
-                                                           String repo,
-                                                           String login,
-                                                           OffsetDateTime since,
-                                                           String branch) {
-
-    List<JsonNode> withBranch = fetchCommitsPaged(accessToken, webClient, owner, repo, login, since, branch);
-    if (withBranch.isEmpty() && branch != null && !branch.isBlank()) {
-      return fetchCommitsPaged(accessToken, webClient, owner, repo, login, since, null);
-    }
-    return withBranch;
-  }
-
-  private static List<JsonNode> fetchCommitsPaged(String accessToken,
-                                                  WebClient webClient,
-                                                  String owner,
-                                                  String repo,
-                                                  String login,
-                                                  OffsetDateTime since,
-                                                  String branch) {
-    final int pageSize = 100;
-    List<JsonNode> allCommits = new ArrayList<>();
-    int page = 1;
-
-    while (true) {
-      StringBuilder uriBuilder = new StringBuilder(
-              "/repos/{owner}/{repo}/commits?author=" + urlEncode(login)
-      );
-      uriBuilder.append("&per_page=").append(pageSize);
-      uriBuilder.append("&page=").append(page);
-      if (branch != null && !branch.isBlank()) {
-        uriBuilder.append("&sha=").append(urlEncode(branch));
-      }
-      if (since != null) {
-        String sinceParam = since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-        uriBuilder.append("&since=").append(urlEncode(sinceParam));
-      }
-
-      List<JsonNode> commitsPage = webClient.get()
-              .uri(uriBuilder.toString(), owner, repo)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-      if (commitsPage == null || commitsPage.isEmpty()) {
-        break;
-      }
-      allCommits.addAll(commitsPage);
-      if (commitsPage.size() < pageSize) {
-        break;
+  /**
+   * Returns the activity of each author within the window starting at {@code since} ({@code null}
+   * for all time), read from the repository's synchronized issue and pull request log. With an
+   * {@code authorLogin} only that author's rows are looked up.
+   */
+  private static Map<String, IssuePrStats> collectIssueAndPrStats(String accessToken,
+                                                                  WebClient webClient,
+                                                                  RepositorySync repositorySync,
+                                                                  String owner,
+                                                                  String repo,
+                                                                  String authorLogin,
+                                                                  OffsetDateTime since) {
+    Map<String, IssuePrStats> statsByAuthor = new HashMap<>();
+    long sinceSeconds = since == null ? Long.MIN_VALUE : since.toEpochSecond();
+    for (RepositorySync.IssueRow row : repositorySync.issues(accessToken, webClient, owner, repo, authorLogin, since)) {
+      if (row.authorLogin() == null || row.authorLogin().isEmpty()) {
+        continue;
       }
-      page++;
+      statsByAuthor.computeIfAbsent(row.authorLogin(), _ -> new IssuePrStats()).count(row, sinceSeconds);
     }
-
-    return allCommits;
+    return statsByAuthor;
   }
 
-  private static String fetchDefaultBranch(String accessToken,
-                                           WebClient webClient,
-                                           String owner,
-                                           String repo) {
-    JsonNode repoNode = webClient.get()
-            .uri("/repos/{owner}/{repo}", owner, repo)
-            .header("Authorization", "Bearer " + accessToken)
-            .retrieve()
-            .bodyToMono(JsonNode.class)
-            .block();
-
-    String defaultBranch = repoNode == null ? null : repoNode.path("default_branch").asText(null);
-    return (defaultBranch == null || defaultBranch.isBlank()) ? null : defaultBranch;
+  private static long epochSeconds(OffsetDateTime since) {
+    return since == null ? Long.MIN_VALUE : since.toEpochSecond();
   }
 
-  private static JsonNode fetchCommitDetails(String accessToken,
-                                             WebClient webClient,
-                                             String owner,
-                                             String repo,
-                                             String sha) {
-    return webClient.get()
-            .uri("/repos/{owner}/{repo}/commits/{sha}", owner, repo, sha)
-            .header("Authorization", "Bearer " + accessToken)
-            .retrieve()
-            .bodyToMono(JsonNode.class)
-            .block();
+  public static String urlEncode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
   }
 
-  private static IssuePrStats collectIssueAndPrStats(String accessToken,
-                                                     WebClient webClient,
-                                                     String owner,
-                                                     String repo,
-                                                     String login,
-                                                     OffsetDateTime since) {
-    IssuePrStats stats = new IssuePrStats();
-    int page = 1;
-    final int pageSize = 100;
-    DateTimeFormatter githubFormatter = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
-
-    while (true) {
-      var issuePage = webClient.get()
-              .uri("/repos/{owner}/{repo}/issues?state=all&per_page=" + pageSize + "&page=" + page, owner, repo)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-
-      if (issuePage == null || issuePage.isEmpty()) {
-        break;
-      }
-
-      for (JsonNode issue : issuePage) {
-        if (issue.hasNonNull("pull_request")) {
-          continue;
-        }
-
-        JsonNode userNode = issue.path("user");
-        String authorLogin = userNode.path("login").asText("");
-        if (!login.equals(authorLogin)) {
-          continue;
-        }
-
-        String createdAtStr = issue.path("created_at").asText(null);
-        String closedAtStr = issue.path("closed_at").asText(null);
-        OffsetDateTime createdAt = parseGithubDate(createdAtStr, githubFormatter);
-        OffsetDateTime closedAt = parseGithubDate(closedAtStr, githubFormatter);
-
-        boolean inCreatedWindow = since == null || (createdAt != null && !createdAt.isBefore(since));
-        boolean inClosedWindow = since == null || (closedAt != null && !closedAt.isBefore(since));
+  private static final class IssuePrStats {
+    private int issuesOpened;
+    private int issuesClosed;
+    private int prsOpened;
+    private int prsMerged;
+    private int prsClosed;
 
+    /**
+     * Counts what {@code row} did at or after {@code sinceSeconds}. Over all time every row counts as
+     * opened, including one whose {@code created_at} is missing or could not be parsed.
+     */
+    private void count(RepositorySync.IssueRow row, long sinceSeconds) {
+      boolean inCreatedWindow = sinceSeconds == Long.MIN_VALUE
+          || (row.createdAt() != 0 && row.createdAt() >= sinceSeconds);
+      boolean inClosedWindow = row.closedAt() != 0 && row.closedAt() >= sinceSeconds;
+      boolean inMergedWindow = row.mergedAt() != 0 && row.mergedAt() >= sinceSeconds;
+      if (row.pullRequest()) {
         if (inCreatedWindow) {
-          stats.issuesOpened++;
+          prsOpened++;
         }
-        if (inClosedWindow && closedAt != null) {
-          stats.issuesClosed++;
+        if (inClosedWindow) {
+          prsClosed++;
         }
-      }
-
-      if (issuePage.size() < pageSize) {
-        break;
-      }
-      page++;
-    }
-    page = 1;
-    while (true) {
-      var prPage = webClient.get()
-              .uri("/repos/{owner}/{repo}/pulls?state=all&per_page=" + pageSize + "&page=" + page, owner, repo)
-              .header("Authorization", "Bearer " + accessToken)
-              .retrieve()
-              .bodyToFlux(JsonNode.class)
-              .collectList()
-              .block();
-      if (prPage == null || prPage.isEmpty()) {
-        break;
-      }
-      for (JsonNode pr : prPage) {
-        var userNode = pr.path("user");
-        var authorLogin = userNode.path("login").asText("");
-        if (!login.equals(authorLogin)) {
-          continue;
+        if (inMergedWindow) {
+          prsMerged++;
         }
-        var createdAtStr = pr.path("created_at").asText(null);
-        var closedAtStr = pr.path("closed_at").asText(null);
-        var mergedAtStr = pr.path("merged_at").asText(null);
-        var createdAt = parseGithubDate(createdAtStr, githubFormatter);
-        var closedAt = parseGithubDate(closedAtStr, githubFormatter);
-        var mergedAt = parseGithubDate(mergedAtStr, githubFormatter);
-        boolean inCreatedWindow = since == null || (createdAt != null && !createdAt.isBefore(since));
-        boolean inClosedWindow = since == null || (closedAt != null && !closedAt.isBefore(since));
-        boolean inMergedWindow = since == null || (mergedAt != null && !mergedAt.isBefore(since));
+      } else {
         if (inCreatedWindow) {
-          stats.prsOpened++;
-        }
-        if (inClosedWindow && closedAt != null) {
-          stats.prsClosed++;
+          issuesOpened++;
         }
-        if (inMergedWindow && mergedAt != null) {
-          stats.prsMerged++;
+        if (inClosedWindow) {
+          issuesClosed++;
         }
       }
-      if (prPage.size() < pageSize) {
-        break;
-      }
-      page++;
-    }
-    return stats;
-  }
-
-  private static OffsetDateTime parseGithubDate(String value, DateTimeFormatter formatter) {
-    if (value == null || value.isBlank()) {
-      return null;
-    }
-    try {
-      return OffsetDateTime.parse(value, formatter);
-    } catch (RuntimeException e) {
-      return null;
-    }
-  }
-
-  private static int estimateLanguagesCount(Set<String> fileNames) {
-    Set<String> extensions = new HashSet<>();
-    for (String name : fileNames) {
-      int idx = name.lastIndexOf('.');
-      if (idx > 0 && idx < name.length() - 1) {
-        String ext = name.substring(idx + 1).toLowerCase(Locale.ROOT);
-        extensions.add(ext);
-      }
     }
-    return extensions.size();
-  }
-
-  public static String urlEncode(String value) {
-    return URLEncoder.encode(value, StandardCharsets.UTF_8);
-  }
-
-  private static final class IssuePrStats {
-    private int issuesOpened;
-    private int issuesClosed;
-    private int prsOpened;
-    private int prsMerged;
-    private int prsClosed;
   }
 
 }
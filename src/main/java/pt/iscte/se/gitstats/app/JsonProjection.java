@@ -0,0 +1,27 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Receives the scalar values of one JSON document (or one element of a top-level array) as
+ * {@link StreamingJsonDecoder} reads them, and keeps only what it needs.
+ * <p>
+ * Paths are field names joined with {@code .}; array elements add {@code []} to the path of their
+ * array, so the name of every changed file of a commit arrives as {@code files[].filename}. The parser
+ * is positioned on the value, which is only materialized if the projection asks for it.
+ */
+interface JsonProjection<T> {
+
+  void value(String path, JsonParser parser) throws IOException;
+
+  /**
+   * Called when a nested object closes, e.g. {@code files[]} after each changed file.
+   */
+  default void endObject(String path) {
+  }
+
+  T build();
+
+}
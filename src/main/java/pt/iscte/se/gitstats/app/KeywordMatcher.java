@@ -0,0 +1,169 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds which of many keywords occur in a text in a single pass, ignoring ASCII case and without
+ * copying the text. The keywords are compiled into an Aho-Corasick automaton whose failure links are
+ * folded into a dense transition table, so scanning costs two array lookups per character. Columns
+ * only exist for the characters the keywords use (every other character leads back to the root),
+ * which keeps the table small enough to stay in cache.
+ * <p>
+ * Each keyword belongs to a category between 0 and 63 and {@link #scan} returns the categories found
+ * as a bit mask. A keyword written {@code ^word} only matches at the start of the text and one written
+ * {@code word$} only at its end; any other keyword matches anywhere. Keywords must be ASCII; other
+ * characters in the text never match.
+ */
+public final class KeywordMatcher {
+
+  private static final int ALPHABET = 128;
+
+  private final byte[] columns;
+  private final int width;
+  private final int[] next;
+  private final int[] depth;
+  private final long[] anywhere;
+  private final long[] atStart;
+  private final long[] atEnd;
+
+  private KeywordMatcher(byte[] columns, int width, int[] next, int[] depth, long[] anywhere, long[] atStart, long[] atEnd) {
+    this.columns = columns;
+    this.width = width;
+    this.next = next;
+    this.depth = depth;
+    this.anywhere = anywhere;
+    this.atStart = atStart;
+    this.atEnd = atEnd;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the categories of the keywords found in {@code text}, bit {@code i} standing for category
+   * {@code i}.
+   */
+  public long scan(CharSequence text) {
+    int state = 0;
+    long found = 0L;
+    for (int i = 0, length = text.length(); i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= ALPHABET) {
+        state = 0;
+        continue;
+      }
+      state = next[state * width + columns[c]];
+      found |= anywhere[state];
+      if (depth[state] == i + 1) {
+        found |= atStart[state];
+      }
+    }
+    return found | atEnd[state];
+  }
+
+  public static final class Builder {
+    private final List<int[]> children = new ArrayList<>();
+    private final List<long[]> outputs = new ArrayList<>();
+
+    private Builder() {
+      newState();
+    }
+
+    /**
+     * Adds {@code keyword} (optionally anchored with a leading {@code ^} or a trailing {@code $}) to
+     * {@code category}.
+     */
+    public Builder add(String keyword, int category) {
+      if (category < 0 || category >= Long.SIZE) {
+        throw new IllegalArgumentException("category must be between 0 and 63");
+      }
+      int anchor = 0;
+      String word = keyword;
+      if (word.startsWith("^")) {
+        anchor = 1;
+        word = word.substring(1);
+      } else if (word.endsWith("$")) {
+        anchor = 2;
+        word = word.substring(0, word.length() - 1);
+      }
+      if (word.isEmpty()) {
+        throw new IllegalArgumentException("keyword must not be empty");
+      }
+      word = word.toLowerCase(Locale.ROOT);
+      int state = 0;
+      for (int i = 0; i < word.length(); i++) {
+        char c = word.charAt(i);
+        if (c >= ALPHABET) {
+          throw new IllegalArgumentException("keyword must be ASCII: " + keyword);
+        }
+        if (children.get(state)[c] == 0) {
+          children.get(state)[c] = newState();
+        }
+        state = children.get(state)[c];
+      }
+      outputs.get(state)[anchor] |= 1L << category;
+      return this;
+    }
+
+    public KeywordMatcher build() {
+      int states = children.size();
+      // Column 0 stands for the characters no keyword uses; upper case shares the lower-case column.
+      byte[] columns = new byte[ALPHABET];
+      int width = 1;
+      for (int c = 0; c < ALPHABET; c++) {
+        for (int[] row : children) {
+          if (row[c] != 0) {
+            columns[c] = (byte) width++;
+            if (c >= 'a' && c <= 'z') {
+              columns[c - 'a' + 'A'] = columns[c];
+            }
+            break;
+          }
+        }
+      }
+      int[] next = new int[states * width];
+      int[] depth = new int[states];
+      int[] fail = new int[states];
+      long[] anywhere = new long[states];
+      long[] atStart = new long[states];
+      long[] atEnd = new long[states];
+      // Breadth-first, so a state's failure target is complete before the state itself.
+      var queue = new ArrayDeque<Integer>();
+      queue.add(0);
+      while (!queue.isEmpty()) {
+        int state = queue.poll();
+        long[] own = outputs.get(state);
+        anywhere[state] = own[0] | anywhere[fail[state]];
+        atStart[state] = own[1];
+        atEnd[state] = own[2] | atEnd[fail[state]];
+        for (int c = 0; c < ALPHABET; c++) {
+          int column = columns[c];
+          if (column == 0 || (c >= 'A' && c <= 'Z')) {
+            continue;
+          }
+          int child = children.get(state)[c];
+          if (child != 0) {
+            depth[child] = depth[state] + 1;
+            fail[child] = state == 0 ? 0 : next[fail[state] * width + column];
+            next[state * width + column] = child;
+            queue.add(child);
+          } else {
+            next[state * width + column] = state == 0 ? 0 : next[fail[state] * width + column];
+          }
+        }
+      }
+      return new KeywordMatcher(columns, width, next, depth, anywhere, atStart, atEnd);
+    }
+
+    private int newState() {
+      children.add(new int[ALPHABET]);
+      outputs.add(new long[3]);
+      return children.size() - 1;
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Pages a GitHub listing by reading the {@code Link} header of the first answer. When it announces
+ * a {@code rel="last"} page, pages 2 to last are requested concurrently, at most {@code concurrency}
+ * at a time; otherwise (GitHub omits {@code last} on some listings) pages are followed one by one
+ * while a {@code rel="next"} link is present. With a concurrency of one, ordered pages are requested
+ * one at a time as they are consumed, so a consumer that stops early pays for no page it did not read.
+ * <p>
+ * {@code uri} must already carry a query string; {@code &page=N} is appended to it.
+ */
+public final class LinkHeaderPaginator {
+
+  private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([a-z]+)\"");
+  private static final Pattern PAGE_PARAM = Pattern.compile("[?&]page=(\\d+)");
+
+  private final WebClient webClient;
+  private final int concurrency;
+
+  public LinkHeaderPaginator(WebClient webClient, int concurrency) {
+    this.webClient = Objects.requireNonNull(webClient, "webClient must not be null");
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1");
+    }
+    this.concurrency = concurrency;
+  }
+
+  private record Page<R>(List<R> items, int lastPage, boolean hasNext) {}
+
+  /**
+   * Emits the decoded pages of {@code uri}. With {@code ordered}, pages arrive in page order (needed
+   * by consumers that stop early); otherwise in completion order. Cancelling the returned
+   * {@code Flux} cancels the pages still in flight.
+   */
+  public <R> Flux<List<R>> pages(String accessToken,
+                                 String uri,
+                                 Object[] uriVariables,
+                                 Function<Flux<DataBuffer>, Flux<R>> decoder,
+                                 boolean ordered) {
+    Objects.requireNonNull(accessToken, "accessToken must not be null");
+    return page(accessToken, uri, uriVariables, decoder, 1).flatMapMany(first -> {
+      Flux<List<R>> head = Flux.just(first.items());
+      if (first.lastPage() > 1) {
+        var rest = Flux.range(2, first.lastPage() - 1);
+        Flux<List<R>> others;
+        if (ordered && concurrency == 1) {
+          // No prefetch: a page is only requested once the previous one has been consumed.
+          others = rest.concatMap(n -> page(accessToken, uri, uriVariables, decoder, n).map(Page::items), 0);
+        } else if (ordered) {
+          others = rest.flatMapSequential(n -> page(accessToken, uri, uriVariables, decoder, n).map(Page::items), concurrency);
+        } else {
+          others = rest.flatMap(n -> page(accessToken, uri, uriVariables, decoder, n).map(Page::items), concurrency);
+        }
+        return head.concatWith(others);
+      }
+      if (first.hasNext()) {
+        Flux<List<R>> others = Mono.just(new PageCursor<>(2, first))
+                .expand(cursor -> cursor.page().hasNext()
+                        ? page(accessToken, uri, uriVariables, decoder, cursor.number())
+                                .map(next -> new PageCursor<>(cursor.number() + 1, next))
+                        : Mono.empty())
+                .skip(1)
+                .map(cursor -> cursor.page().items());
+        return head.concatWith(others);
+      }
+      return head;
+    });
+  }
+
+  private record PageCursor<R>(int number, Page<R> page) {}
+
+  private <R> Mono<Page<R>> page(String accessToken,
+                                 String uri,
+                                 Object[] uriVariables,
+                                 Function<Flux<DataBuffer>, Flux<R>> decoder,
+                                 int number) {
+    return webClient.get()
+            .uri(uri + "&page=" + number, uriVariables)
+            .header("Authorization", "Bearer " + accessToken)
+            .exchangeToMono(response -> {
+              if (response.statusCode().isError()) {
+                return response.createError();
+              }
+              return decoder.apply(response.bodyToFlux(DataBuffer.class))
+                      .collectList()
+                      .map(items -> toPage(response, items));
+            });
+  }
+
+  private static <R> Page<R> toPage(ClientResponse response, List<R> items) {
+    int lastPage = 0;
+    boolean hasNext = false;
+    var link = response.headers().asHttpHeaders().getFirst(HttpHeaders.LINK);
+    if (link != null) {
+      Matcher matcher = LINK.matcher(link);
+      while (matcher.find()) {
+        switch (matcher.group(2)) {
+          case "last" -> lastPage = pageNumber(matcher.group(1));
+          case "next" -> hasNext = true;
+          default -> {
+          }
+        }
+      }
+    }
+    return new Page<>(items, lastPage, hasNext);
+  }
+
+  private static int pageNumber(String url) {
+    Matcher matcher = PAGE_PARAM.matcher(url);
+    return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+  }
+
+}
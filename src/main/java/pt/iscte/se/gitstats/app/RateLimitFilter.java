@@ -0,0 +1,258 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.RateLimitExceededException;
+import pt.iscte.se.gitstats.dto.RateLimitBudget;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Paces GitHub requests per access token from the {@code X-RateLimit-*} headers of previous answers.
+ * <p>
+ * Each token owns a token bucket. At most {@code burst-fraction} of the remaining hourly budget can be
+ * spent at once; past that, requests are spread evenly over the time left until
+ * {@code X-RateLimit-Reset}. Secondary limits (403/429 with {@code Retry-After}, or an exhausted
+ * primary budget) block the token until GitHub allows it again, and the blocked request is retried.
+ * Requests that would have to wait longer than {@code max-wait} fail with
+ * {@link RateLimitExceededException} instead of holding a servlet thread.
+ */
+@Component
+public class RateLimitFilter implements ExchangeFilterFunction {
+
+  private static final Duration DEFAULT_SECONDARY_WAIT = Duration.ofSeconds(60);
+
+  private final double burstFraction;
+  private final Duration maxWait;
+  private final int maxRetries;
+  private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+  public RateLimitFilter(@Value("${app.github.rate-limit.burst-fraction:0.5}") double burstFraction,
+                         @Value("${app.github.rate-limit.max-wait:PT60S}") Duration maxWait,
+                         @Value("${app.github.rate-limit.max-retries:2}") int maxRetries) {
+    this.burstFraction = burstFraction;
+    this.maxWait = maxWait;
+    this.maxRetries = maxRetries;
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    var fingerprint = ConditionalRequestFilter.tokenFingerprint(
+            request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+    var bucket = buckets.computeIfAbsent(fingerprint + "|" + resource(request), _ -> new TokenBucket());
+    return exchange(request, next, bucket, 0);
+  }
+
+  private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, TokenBucket bucket, int attempt) {
+    long delayMillis = bucket.reserve(System.currentTimeMillis(), burstFraction, maxWait.toMillis());
+    if (delayMillis < 0) {
+      return Mono.error(new RateLimitExceededException(
+              "GitHub rate limit budget exhausted", Duration.ofMillis(-delayMillis)));
+    }
+    var exchange = next.exchange(request).flatMap(response -> {
+      var headers = response.headers().asHttpHeaders();
+      long now = System.currentTimeMillis();
+      bucket.update(headers, now);
+      int status = response.statusCode().value();
+      if (status != 403 && status != 429) {
+        return Mono.just(response);
+      }
+      Long retryAt = secondaryRetryAt(headers, status, now);
+      if (retryAt == null) {
+        return Mono.just(response);
+      }
+      bucket.blockUntil(retryAt);
+      if (attempt >= maxRetries) {
+        return response.releaseBody().then(Mono.error(new RateLimitExceededException(
+                "GitHub rate limit reached", Duration.ofMillis(Math.max(0, retryAt - now)))));
+      }
+      return response.releaseBody().then(Mono.defer(() -> exchange(request, next, bucket, attempt + 1)));
+    });
+    return delayMillis <= 0 ? exchange : Mono.delay(Duration.ofMillis(delayMillis)).then(exchange);
+  }
+
+  /**
+   * GitHub keeps separate budgets for the REST core, search and GraphQL APIs.
+   */
+  private static String resource(ClientRequest request) {
+    var path = request.url().getPath();
+    if (path.startsWith("/graphql")) {
+      return "graphql";
+    }
+    if (path.startsWith("/search")) {
+      return "search";
+    }
+    return "core";
+  }
+
+  /**
+   * Returns when a rate-limited response may be retried, or {@code null} when the 403/429 is an
+   * ordinary permission error.
+   */
+  private static Long secondaryRetryAt(HttpHeaders headers, int status, long now) {
+    var retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+    if (retryAfter != null) {
+      try {
+        return now + Long.parseLong(retryAfter.trim()) * 1000L;
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    var remaining = headers.getFirst("X-RateLimit-Remaining");
+    var reset = headers.getFirst("X-RateLimit-Reset");
+    if ("0".equals(remaining) && reset != null) {
+      try {
+        return Long.parseLong(reset.trim()) * 1000L;
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    return status == 429 ? now + DEFAULT_SECONDARY_WAIT.toMillis() : null;
+  }
+
+  /**
+   * Returns the last REST core budget GitHub reported for this token, or {@code null} before the first
+   * answer. Once its reset time has passed the budget is reported as fully restored, since no answer
+   * may come to say so when every request is being held back for lack of budget.
+   */
+  public RateLimitBudget budget(String accessToken) {
+    var bucket = buckets.get(ConditionalRequestFilter.tokenFingerprint("Bearer " + accessToken) + "|core");
+    return bucket == null ? null : bucket.snapshot(System.currentTimeMillis());
+  }
+
+  /**
+   * Tells whether the token still has at least {@code reserveFraction} of its REST core limit left.
+   * Before GitHub has reported a budget there is nothing to keep.
+   */
+  public boolean keepsReserve(String accessToken, double reserveFraction) {
+    return keepsReserve(budget(accessToken), reserveFraction);
+  }
+
+  private static boolean keepsReserve(RateLimitBudget budget, double reserveFraction) {
+    if (budget == null || budget.limit() <= 0 || budget.remaining() < 0) {
+      return true;
+    }
+    return budget.remaining() >= budget.limit() * reserveFraction;
+  }
+
+  /**
+   * Returns a filter for background work: each request fails with {@link RateLimitExceededException}
+   * instead of being sent once its token is down to {@code reserveFraction} of its limit, so that share
+   * stays with interactive requests however many calls the work turns out to need. Registered before
+   * this filter, it checks every page and detail lookup rather than only the start of the work.
+   */
+  public ExchangeFilterFunction keepingReserve(double reserveFraction) {
+    return (request, next) -> {
+      var fingerprint = ConditionalRequestFilter.tokenFingerprint(
+              request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+      var bucket = buckets.get(fingerprint + "|" + resource(request));
+      var budget = bucket == null ? null : bucket.snapshot(System.currentTimeMillis());
+      if (keepsReserve(budget, reserveFraction)) {
+        return next.exchange(request);
+      }
+      long waitMillis = Math.max(0, budget.resetEpochSeconds() * 1000L - System.currentTimeMillis());
+      return Mono.error(new RateLimitExceededException(
+              "GitHub rate limit reserved for interactive requests (" + budget.remaining() + " remaining)",
+              Duration.ofMillis(waitMillis)));
+    };
+  }
+
+  /**
+   * Fails fast when an operation expected to cost about {@code estimatedRequests} calls cannot be
+   * served from the remaining budget before the next reset.
+   */
+  public void admit(String accessToken, int estimatedRequests) {
+    var budget = budget(accessToken);
+    if (budget == null || budget.remaining() < 0 || budget.remaining() >= estimatedRequests) {
+      return;
+    }
+    long waitMillis = Math.max(0, budget.resetEpochSeconds() * 1000L - System.currentTimeMillis());
+    throw new RateLimitExceededException(
+            "Not enough GitHub rate limit budget left (" + budget.remaining() + " remaining)",
+            Duration.ofMillis(waitMillis));
+  }
+
+  private static final class TokenBucket {
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetAtMillis;
+    private long blockedUntilMillis;
+    private double tokens = Double.NaN;
+    private long lastRefillMillis;
+
+    /**
+     * Takes one permit and returns how long the caller must wait before using it, or the negated wait
+     * when that wait exceeds {@code maxWaitMillis} (in which case no permit is taken).
+     */
+    synchronized long reserve(long now, double burstFraction, long maxWaitMillis) {
+      if (blockedUntilMillis > now) {
+        long wait = blockedUntilMillis - now;
+        return wait > maxWaitMillis ? -wait : wait;
+      }
+      if (remaining < 0 || resetAtMillis <= now) {
+        // Nothing known yet, or the window has rolled over: do not pace until GitHub tells us more.
+        return 0;
+      }
+      double capacity = Math.max(1.0, remaining * burstFraction);
+      double ratePerMilli = Math.max(remaining, 1) / (double) Math.max(resetAtMillis - now, 1000L);
+      if (Double.isNaN(tokens)) {
+        tokens = capacity;
+      } else {
+        tokens = Math.min(capacity, tokens + (now - lastRefillMillis) * ratePerMilli);
+      }
+      lastRefillMillis = now;
+      double left = tokens - 1.0;
+      long wait = left >= 0 ? 0 : (long) Math.ceil(-left / ratePerMilli);
+      if (wait > maxWaitMillis) {
+        return -wait;
+      }
+      tokens = left;
+      return wait;
+    }
+
+    synchronized void update(HttpHeaders headers, long now) {
+      var limitHeader = headers.getFirst("X-RateLimit-Limit");
+      var remainingHeader = headers.getFirst("X-RateLimit-Remaining");
+      var resetHeader = headers.getFirst("X-RateLimit-Reset");
+      if (remainingHeader == null || resetHeader == null) {
+        return;
+      }
+      try {
+        long newResetAt = Long.parseLong(resetHeader.trim()) * 1000L;
+        int newRemaining = Integer.parseInt(remainingHeader.trim());
+        if (newResetAt != resetAtMillis) {
+          // New window: restart the bucket from the fresh budget.
+          tokens = Double.NaN;
+        }
+        resetAtMillis = newResetAt;
+        remaining = newRemaining;
+        if (limitHeader != null) {
+          limit = Integer.parseInt(limitHeader.trim());
+        }
+        if (remaining == 0 && resetAtMillis > now) {
+          blockedUntilMillis = Math.max(blockedUntilMillis, resetAtMillis);
+        }
+      } catch (NumberFormatException ignored) {
+      }
+    }
+
+    synchronized void blockUntil(long untilMillis) {
+      blockedUntilMillis = Math.max(blockedUntilMillis, untilMillis);
+    }
+
+    synchronized RateLimitBudget snapshot(long now) {
+      if (remaining >= 0 && resetAtMillis <= now) {
+        return new RateLimitBudget(limit, limit, resetAtMillis / 1000L);
+      }
+      return new RateLimitBudget(limit, remaining, resetAtMillis / 1000L);
+    }
+  }
+
+}
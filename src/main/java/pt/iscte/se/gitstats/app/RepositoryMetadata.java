@@ -0,0 +1,31 @@
+package pt.iscte.se.gitstats.app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The fields of {@code /repos/{owner}/{repo}} the statistics use. {@code pushedAt} is in epoch
+ * seconds, {@code 0} for a repository that was never pushed to; {@code sizeKb} is GitHub's estimate
+ * of the repository size.
+ */
+public record RepositoryMetadata(
+  String fullName,
+  String defaultBranch,
+  String visibility,
+  boolean isPrivate,
+  long sizeKb,
+  long pushedAt
+) {
+
+  public static RepositoryMetadata fromJson(JsonNode node) {
+    var defaultBranch = node.path("default_branch").asText(null);
+    return new RepositoryMetadata(
+            node.path("full_name").asText(""),
+            defaultBranch == null || defaultBranch.isBlank() ? null : defaultBranch,
+            node.path("visibility").asText(node.path("private").asBoolean() ? "private" : "public"),
+            node.path("private").asBoolean(),
+            node.path("size").asLong(0L),
+            RepositorySync.epochSeconds(node.path("pushed_at").asText(null))
+    );
+  }
+
+}
@@ -0,0 +1,107 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Short-lived cache of {@link RepositoryMetadata}, shared by every endpoint that needs a repository's
+ * default branch, so rendering a dashboard costs at most one {@code /repos/{owner}/{repo}} call.
+ * <p>
+ * Entries expire after {@code app.github.repo-metadata.ttl} and the least recently used ones are
+ * dropped beyond {@code max-entries}. Repository listings feed {@link #observe}, which replaces an
+ * entry as soon as its {@code pushed_at} moves. Entries are kept per token, so metadata of a private
+ * repository is never served to a user who could not read it.
+ */
+@Component
+public class RepositoryMetadataCache {
+
+  private final Duration ttl;
+  private final Map<String, Entry> entries;
+  private final Counter hits;
+  private final Counter misses;
+
+  public RepositoryMetadataCache(@Value("${app.github.repo-metadata.ttl:10m}") Duration ttl,
+                                 @Value("${app.github.repo-metadata.max-entries:1000}") int maxEntries,
+                                 MeterRegistry meterRegistry) {
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.hits = Counter.builder("gitstats.repo.metadata.hits").register(meterRegistry);
+    this.misses = Counter.builder("gitstats.repo.metadata.misses").register(meterRegistry);
+    Gauge.builder("gitstats.repo.metadata.size", this, RepositoryMetadataCache::size).register(meterRegistry);
+  }
+
+  private record Entry(RepositoryMetadata metadata, long fetchedAtMillis) {}
+
+  /**
+   * Returns the metadata of {@code owner/repo} as seen with {@code accessToken}, fetching it when it is
+   * not cached or has expired.
+   */
+  public RepositoryMetadata get(String accessToken, WebClient webClient, String owner, String repo) {
+    var key = key(accessToken, owner + "/" + repo);
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      var entry = entries.get(key);
+      if (entry != null && now - entry.fetchedAtMillis() < ttl.toMillis()) {
+        hits.increment();
+        return entry.metadata();
+      }
+    }
+    misses.increment();
+    JsonNode repoNode = webClient.get()
+            .uri("/repos/{owner}/{repo}", owner, repo)
+            .header("Authorization", "Bearer " + accessToken)
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .block();
+    var metadata = repoNode == null
+            ? new RepositoryMetadata(owner + "/" + repo, null, null, false, 0L, 0L)
+            : RepositoryMetadata.fromJson(repoNode);
+    synchronized (entries) {
+      entries.put(key, new Entry(metadata, now));
+    }
+    return metadata;
+  }
+
+  /**
+   * Records metadata that arrived as part of another answer (a repository listing). A cached entry is
+   * replaced when GitHub reports a different {@code pushed_at}; otherwise the cached one is kept.
+   */
+  public void observe(String accessToken, RepositoryMetadata metadata) {
+    if (metadata.fullName() == null || metadata.fullName().isBlank()) {
+      return;
+    }
+    var key = key(accessToken, metadata.fullName());
+    synchronized (entries) {
+      var entry = entries.get(key);
+      if (entry == null || entry.metadata().pushedAt() != metadata.pushedAt()) {
+        entries.put(key, new Entry(metadata, System.currentTimeMillis()));
+      }
+    }
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static String key(String accessToken, String fullName) {
+    return fullName.toLowerCase(Locale.ROOT) + "|" + ConditionalRequestFilter.tokenFingerprint("Bearer " + accessToken);
+  }
+
+}
@@ -0,0 +1,687 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static pt.iscte.se.gitstats.app.IndividualStats.urlEncode;
+
+/**
+ * Incrementally synchronized copy of the commits, issues and pull requests of recently viewed
+ * repositories.
+ * <p>
+ * Each log remembers a watermark (the branch head sha, the newest issue {@code updated_at}) and the
+ * oldest point from which it is complete. A refresh only asks GitHub for what is newer than the
+ * watermark, plus the older range when a caller needs a wider window than the log covers, so after
+ * the first load a refresh of an active repository costs one or two listing pages. Commits are walked
+ * from the branch head along their parents until the log's own commits are reached, so a merged
+ * branch is picked up whatever its commit dates. Logs are rebuilt from scratch after
+ * {@code app.github.sync.full-resync-after} to drop rewritten history, and the least recently used
+ * repositories are forgotten beyond {@code app.github.sync.max-repositories}.
+ * <p>
+ * Every read goes to GitHub with the caller's token first, so a user without access to a repository
+ * gets the upstream error instead of another user's data. Pages are fetched outside the log's monitor
+ * and merged under it, so a slow listing never holds up other readers of the repository.
+ * <p>
+ * Webhook deliveries ({@link #applyPush}, {@link #applyIssue}, {@link #removeIssue}) update logs that
+ * are already loaded in place. They never move a watermark, so a missed delivery is still picked up by the next refresh.
+ */
+@Component
+public class RepositorySync {
+
+  private static final int PAGE_SIZE = 100;
+
+  private final int maxRepositories;
+  private final Duration fullResyncAfter;
+  private final int pageConcurrency;
+  private final WorkTypeClassifier classifier;
+  private final Map<String, CommitLog> commitLogs;
+  private final Map<String, IssueLog> issueLogs;
+
+  public RepositorySync(@Value("${app.github.sync.max-repositories:50}") int maxRepositories,
+                        @Value("${app.github.sync.full-resync-after:24h}") Duration fullResyncAfter,
+                        @Value("${app.github.pagination.concurrency:4}") int pageConcurrency,
+                        WorkTypeClassifier classifier) {
+    this.maxRepositories = maxRepositories;
+    this.fullResyncAfter = fullResyncAfter;
+    this.pageConcurrency = pageConcurrency;
+    this.classifier = classifier;
+    this.commitLogs = boundedLru();
+    this.issueLogs = boundedLru();
+  }
+
+  private <V> Map<String, V> boundedLru() {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxRepositories;
+      }
+    };
+  }
+
+  /**
+   * A commit of a branch. Dates are epoch seconds; {@code authorLogin} is {@code null} when the commit
+   * is not linked to a GitHub account.
+   */
+  public record CommitRow(String sha, String authorLogin, long authorDate, long committerDate) {}
+
+  /**
+   * An issue or pull request. Dates are epoch seconds, {@code 0} when the event did not happen.
+   */
+  public record IssueRow(int number,
+                         String authorLogin,
+                         boolean pullRequest,
+                         boolean open,
+                         long createdAt,
+                         long closedAt,
+                         long mergedAt,
+                         long updatedAt) {}
+
+  /**
+   * A commit announced by a {@code push} webhook, with its message.
+   */
+  public record PushedCommit(CommitRow row, String message) {}
+
+  /**
+   * Returns every commit of {@code branch} ({@code null} for the default branch) committed at or after
+   * {@code since} ({@code null} for the whole history), after bringing the log up to date.
+   */
+  public List<CommitRow> commits(String accessToken,
+                                 WebClient webClient,
+                                 String owner,
+                                 String repo,
+                                 String branch,
+                                 OffsetDateTime since) {
+    return commitFacts(accessToken, webClient, owner, repo, branch, since)
+            .rows(since == null ? Long.MIN_VALUE : since.toEpochSecond());
+  }
+
+  /**
+   * Brings the log of {@code branch} up to date for the window starting at {@code since} and returns
+   * its fact table. The table may hold older commits too; queries take their own lower bound.
+   */
+  public CommitFactTable commitFacts(String accessToken,
+                                     WebClient webClient,
+                                     String owner,
+                                     String repo,
+                                     String branch,
+                                     OffsetDateTime since) {
+    var key = repoKey(owner, repo) + "@" + (branch == null ? "" : branch);
+    CommitLog log;
+    synchronized (commitLogs) {
+      log = commitLogs.computeIfAbsent(key, _ -> new CommitLog());
+    }
+    long sinceSeconds = since == null ? Long.MIN_VALUE : since.toEpochSecond();
+    while (true) {
+      long generation;
+      boolean synced;
+      CommitFactTable facts;
+      String headSha;
+      long coveredSince;
+      Set<String> pushed;
+      synchronized (log) {
+        if (log.synced && System.currentTimeMillis() - log.firstSyncMillis > fullResyncAfter.toMillis()) {
+          log.reset();
+        }
+        generation = log.generation;
+        synced = log.synced;
+        facts = log.facts;
+        headSha = log.headSha;
+        coveredSince = log.coveredSince;
+        pushed = Set.copyOf(log.pushedShas);
+      }
+      List<ListedCommit> newer;
+      List<ListedCommit> older = List.of();
+      if (!synced) {
+        newer = fetchCommits(accessToken, webClient, owner, repo, branch, since, null);
+      } else {
+        newer = fetchNewCommits(accessToken, webClient, owner, repo, branch, facts, pushed, headSha, coveredSince);
+        if (sinceSeconds < coveredSince) {
+          var until = Instant.ofEpochSecond(coveredSince).atOffset(ZoneOffset.UTC);
+          older = fetchCommits(accessToken, webClient, owner, repo, branch, since, until);
+        }
+      }
+      synchronized (log) {
+        if (log.generation != generation) {
+          // Reset by a full resync or a forced push while the pages were in flight: start over.
+          continue;
+        }
+        newer.forEach(log::add);
+        older.forEach(log::add);
+        if (!newer.isEmpty()) {
+          log.headSha = newer.getFirst().row().sha();
+        }
+        if (!log.synced) {
+          log.synced = true;
+          log.firstSyncMillis = System.currentTimeMillis();
+          log.coveredSince = sinceSeconds;
+        } else {
+          log.coveredSince = Math.min(log.coveredSince, sinceSeconds);
+        }
+        return log.facts;
+      }
+    }
+  }
+
+  /**
+   * Returns every issue and pull request updated at or after {@code updatedSince} ({@code null} for
+   * all of them), after bringing the log up to date. Anything opened, closed or merged after a given
+   * instant was necessarily updated after it, so this is enough for any activity window.
+   */
+  public List<IssueRow> issues(String accessToken,
+                               WebClient webClient,
+                               String owner,
+                               String repo,
+                               OffsetDateTime updatedSince) {
+    return issues(accessToken, webClient, owner, repo, null, updatedSince);
+  }
+
+  /**
+   * Same as {@link #issues(String, WebClient, String, String, OffsetDateTime)}, restricted to the
+   * issues and pull requests opened by {@code authorLogin} ({@code null} for everyone). The log keeps
+   * them indexed by author, so this is a lookup rather than a scan of the repository.
+   */
+  public List<IssueRow> issues(String accessToken,
+                               WebClient webClient,
+                               String owner,
+                               String repo,
+                               String authorLogin,
+                               OffsetDateTime updatedSince) {
+    var key = repoKey(owner, repo);
+    IssueLog log;
+    synchronized (issueLogs) {
+      log = issueLogs.computeIfAbsent(key, _ -> new IssueLog());
+    }
+    long sinceSeconds = updatedSince == null ? Long.MIN_VALUE : updatedSince.toEpochSecond();
+    while (true) {
+      long generation;
+      boolean synced;
+      long newestUpdatedAt;
+      long coveredSince;
+      synchronized (log) {
+        if (log.synced && System.currentTimeMillis() - log.firstSyncMillis > fullResyncAfter.toMillis()) {
+          log.reset();
+        }
+        generation = log.generation;
+        synced = log.synced;
+        newestUpdatedAt = log.newestUpdatedAt;
+        coveredSince = log.coveredSince;
+      }
+      List<IssueRow> newer;
+      List<IssueRow> older = List.of();
+      if (!synced) {
+        newer = fetchIssues(accessToken, webClient, owner, repo, updatedSince, Long.MAX_VALUE);
+      } else {
+        var newerThan = newestUpdatedAt == 0
+                ? updatedSince
+                : Instant.ofEpochSecond(newestUpdatedAt).atOffset(ZoneOffset.UTC);
+        newer = fetchIssues(accessToken, webClient, owner, repo, newerThan, Long.MAX_VALUE);
+        if (sinceSeconds < coveredSince) {
+          // Oldest-updated first, stopping where the log is already complete.
+          older = fetchIssues(accessToken, webClient, owner, repo, updatedSince, coveredSince);
+        }
+      }
+      synchronized (log) {
+        if (log.generation != generation) {
+          continue;
+        }
+        older.forEach(log::add);
+        newer.forEach(log::add);
+        if (!log.synced) {
+          log.synced = true;
+          log.firstSyncMillis = System.currentTimeMillis();
+          log.coveredSince = sinceSeconds;
+        } else {
+          log.coveredSince = Math.min(log.coveredSince, sinceSeconds);
+        }
+        Collection<IssueRow> rows = authorLogin == null
+                ? log.rows.values()
+                : log.rowsByAuthor.getOrDefault(authorLogin, Map.of()).values();
+        return rows.stream()
+                .filter(row -> row.updatedAt() >= sinceSeconds)
+                .toList();
+      }
+    }
+  }
+
+  /**
+   * Adds the commits pushed to {@code branch} to its loaded log, and to the default-branch log when
+   * {@code defaultBranch} is set. A forced push rewrote history, so those logs are dropped instead and
+   * rebuilt on the next read.
+   *
+   * @return whether a loaded log was touched
+   */
+  public boolean applyPush(String owner,
+                           String repo,
+                           String branch,
+                           boolean defaultBranch,
+                           boolean forced,
+                           List<PushedCommit> commits) {
+    List<CommitLog> logs = new ArrayList<>();
+    synchronized (commitLogs) {
+      var branchLog = commitLogs.get(repoKey(owner, repo) + "@" + branch);
+      if (branchLog != null) {
+        logs.add(branchLog);
+      }
+      var defaultLog = defaultBranch ? commitLogs.get(repoKey(owner, repo) + "@") : null;
+      if (defaultLog != null) {
+        logs.add(defaultLog);
+      }
+    }
+    boolean touched = false;
+    for (CommitLog log : logs) {
+      synchronized (log) {
+        if (!log.synced) {
+          continue;
+        }
+        touched = true;
+        if (forced) {
+          log.reset();
+          continue;
+        }
+        for (PushedCommit commit : commits) {
+          log.put(new ListedCommit(commit.row(), classifier.classifyMessage(commit.message()), List.of()));
+          log.pushedShas.add(commit.row().sha());
+        }
+      }
+    }
+    return touched;
+  }
+
+  /**
+   * Replaces issue or pull request {@code row.number()} in the loaded log of {@code owner/repo}.
+   *
+   * @return whether a loaded log was touched
+   */
+  public boolean applyIssue(String owner, String repo, IssueRow row) {
+    IssueLog log;
+    synchronized (issueLogs) {
+      log = issueLogs.get(repoKey(owner, repo));
+    }
+    if (log == null) {
+      return false;
+    }
+    synchronized (log) {
+      if (!log.synced) {
+        return false;
+      }
+      log.put(row);
+      return true;
+    }
+  }
+
+  /**
+   * Removes issue {@code number} from the loaded log of {@code owner/repo}, after it was deleted or
+   * transferred to another repository.
+   *
+   * @return whether a loaded log was touched
+   */
+  public boolean removeIssue(String owner, String repo, int number) {
+    IssueLog log;
+    synchronized (issueLogs) {
+      log = issueLogs.get(repoKey(owner, repo));
+    }
+    if (log == null) {
+      return false;
+    }
+    synchronized (log) {
+      if (!log.synced) {
+        return false;
+      }
+      log.remove(number);
+      return true;
+    }
+  }
+
+  private List<ListedCommit> fetchCommits(String accessToken,
+                                          WebClient webClient,
+                                          String owner,
+                                          String repo,
+                                          String branch,
+                                          OffsetDateTime since,
+                                          OffsetDateTime until) {
+    List<ListedCommit> listed = new ArrayList<>();
+    forEachPage(accessToken, webClient, commitsUri(branch, since, until), owner, repo,
+            () -> new CommitRowProjection(classifier), false, pageConcurrency, page -> {
+      for (ListedCommit commit : page) {
+        if (hasSha(commit)) {
+          listed.add(commit);
+        }
+      }
+      return true;
+    });
+    return listed;
+  }
+
+  /**
+   * Walks {@code branch} from its head, newest first and one page at a time, until the ancestry of
+   * every commit the log lacks reaches commits it holds. Unlike a {@code since} cut-off this also finds
+   * the commits of a merged branch, whatever their dates; the start of the covered window only bounds
+   * the listing. Commits announced by a push webhook ({@code pushed}) are walked through as if
+   * missing, so the listing brings their exact dates.
+   */
+  private List<ListedCommit> fetchNewCommits(String accessToken,
+                                             WebClient webClient,
+                                             String owner,
+                                             String repo,
+                                             String branch,
+                                             CommitFactTable facts,
+                                             Set<String> pushed,
+                                             String headSha,
+                                             long coveredSince) {
+    var since = coveredSince == Long.MIN_VALUE ? null : Instant.ofEpochSecond(coveredSince).atOffset(ZoneOffset.UTC);
+    List<ListedCommit> listed = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    Set<String> wanted = new HashSet<>();
+    Predicate<String> known = sha -> seen.contains(sha) || (facts.contains(sha) && !pushed.contains(sha));
+    forEachPage(accessToken, webClient, commitsUri(branch, since, null), owner, repo,
+            () -> new CommitRowProjection(classifier), true, 1, page -> {
+      for (ListedCommit commit : page) {
+        if (!hasSha(commit)) {
+          continue;
+        }
+        var sha = commit.row().sha();
+        if (listed.isEmpty() && sha.equals(headSha)) {
+          return false;
+        }
+        boolean missing = !known.test(sha);
+        listed.add(commit);
+        seen.add(sha);
+        wanted.remove(sha);
+        if (missing) {
+          for (String parent : commit.parents()) {
+            if (!known.test(parent)) {
+              wanted.add(parent);
+            }
+          }
+        }
+      }
+      return !wanted.isEmpty();
+    });
+    return listed;
+  }
+
+  private static boolean hasSha(ListedCommit commit) {
+    return commit.row().sha() != null && !commit.row().sha().isBlank();
+  }
+
+  private static String commitsUri(String branch, OffsetDateTime since, OffsetDateTime until) {
+    StringBuilder uri = new StringBuilder("/repos/{owner}/{repo}/commits?per_page=" + PAGE_SIZE);
+    if (branch != null && !branch.isBlank()) {
+      uri.append("&sha=").append(urlEncode(branch));
+    }
+    if (since != null) {
+      uri.append("&since=").append(urlEncode(since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+    }
+    if (until != null) {
+      uri.append("&until=").append(urlEncode(until.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+    }
+    return uri.toString();
+  }
+
+  private List<IssueRow> fetchIssues(String accessToken,
+                                     WebClient webClient,
+                                     String owner,
+                                     String repo,
+                                     OffsetDateTime since,
+                                     long stopAtUpdatedAt) {
+    StringBuilder uri = new StringBuilder(
+            "/repos/{owner}/{repo}/issues?state=all&sort=updated&direction=asc&per_page=" + PAGE_SIZE);
+    if (since != null) {
+      uri.append("&since=").append(urlEncode(since.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+    }
+    List<IssueRow> rows = new ArrayList<>();
+    forEachPage(accessToken, webClient, uri.toString(), owner, repo, IssueRowProjection::new, true, pageConcurrency, page -> {
+      long lastUpdatedAt = Long.MIN_VALUE;
+      for (IssueRow row : page) {
+        rows.add(row);
+        lastUpdatedAt = row.updatedAt();
+      }
+      return lastUpdatedAt < stopAtUpdatedAt;
+    });
+    return rows;
+  }
+
+  /**
+   * Hands the pages of {@code uri} to {@code onPage} on the calling thread until they run out or
+   * {@code onPage} returns {@code false}, which cancels the pages still in flight. Pages are fetched
+   * {@code concurrency} at a time; {@code ordered} keeps them in page order for consumers that stop
+   * early.
+   */
+  private <R> void forEachPage(String accessToken,
+                               WebClient webClient,
+                               String uri,
+                               String owner,
+                               String repo,
+                               Supplier<JsonProjection<R>> projection,
+                               boolean ordered,
+                               int concurrency,
+                               Predicate<List<R>> onPage) {
+    var paginator = new LinkHeaderPaginator(webClient, concurrency);
+    try (Stream<List<R>> pages = paginator
+            .pages(accessToken, uri, new Object[] {owner, repo},
+                    body -> StreamingJsonDecoder.decodeArray(body, projection), ordered)
+            .toStream(1)) {
+      Iterator<List<R>> iterator = pages.iterator();
+      while (iterator.hasNext()) {
+        if (!onPage.test(iterator.next())) {
+          break;
+        }
+      }
+    }
+  }
+
+  static long epochSeconds(String githubDate) {
+    if (githubDate == null || githubDate.isBlank() || "null".equals(githubDate)) {
+      return 0L;
+    }
+    try {
+      return OffsetDateTime.parse(githubDate, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toEpochSecond();
+    } catch (RuntimeException e) {
+      return 0L;
+    }
+  }
+
+  /**
+   * A listed commit with the work type its message alone settles, {@code null} when it does not, and
+   * the shas of its parents.
+   */
+  private record ListedCommit(CommitRow row, WorkType workType, List<String> parents) {}
+
+  /**
+   * Reads one element of a {@code /commits} listing. The message is classified right away and not
+   * kept.
+   */
+  private static final class CommitRowProjection implements JsonProjection<ListedCommit> {
+    private final WorkTypeClassifier classifier;
+    private String sha;
+    private String authorLogin;
+    private long authorDate;
+    private long committerDate;
+    private String message;
+    private final List<String> parents = new ArrayList<>(2);
+
+    private CommitRowProjection(WorkTypeClassifier classifier) {
+      this.classifier = classifier;
+    }
+
+    @Override
+    public void value(String path, JsonParser parser) throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return;
+      }
+      switch (path) {
+        case "sha" -> sha = parser.getText();
+        case "author.login" -> authorLogin = parser.getText();
+        case "commit.author.date" -> authorDate = epochSeconds(parser.getText());
+        case "commit.committer.date" -> committerDate = epochSeconds(parser.getText());
+        case "commit.message" -> message = parser.getText();
+        case "parents[].sha" -> parents.add(parser.getText());
+        default -> {
+        }
+      }
+    }
+
+    @Override
+    public ListedCommit build() {
+      return new ListedCommit(
+              new CommitRow(sha, authorLogin, authorDate, committerDate),
+              message == null ? null : classifier.classifyMessage(message),
+              List.copyOf(parents));
+    }
+  }
+
+  /**
+   * Reads one element of an {@code /issues} listing. Pull requests are recognized by their
+   * {@code pull_request} object.
+   */
+  private static final class IssueRowProjection implements JsonProjection<IssueRow> {
+    private int number;
+    private String authorLogin;
+    private boolean pullRequest;
+    private boolean open;
+    private long createdAt;
+    private long closedAt;
+    private long mergedAt;
+    private long updatedAt;
+
+    @Override
+    public void value(String path, JsonParser parser) throws IOException {
+      if (path.startsWith("pull_request.")) {
+        pullRequest = true;
+      }
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return;
+      }
+      switch (path) {
+        case "number" -> number = parser.getValueAsInt(0);
+        case "user.login" -> authorLogin = parser.getText();
+        case "state" -> open = "open".equals(parser.getText());
+        case "created_at" -> createdAt = epochSeconds(parser.getText());
+        case "closed_at" -> closedAt = epochSeconds(parser.getText());
+        case "updated_at" -> updatedAt = epochSeconds(parser.getText());
+        case "pull_request.merged_at" -> mergedAt = epochSeconds(parser.getText());
+        default -> {
+        }
+      }
+    }
+
+    @Override
+    public IssueRow build() {
+      return new IssueRow(number, authorLogin, pullRequest, open, createdAt, closedAt, mergedAt, updatedAt);
+    }
+  }
+
+  private static String repoKey(String owner, String repo) {
+    return (owner + "/" + repo).toLowerCase(Locale.ROOT);
+  }
+
+  private static final class CommitLog {
+    private CommitFactTable facts = new CommitFactTable();
+    // Shas added by a push webhook and not listed since.
+    private final Set<String> pushedShas = new HashSet<>();
+    private long generation;
+    private boolean synced;
+    private long firstSyncMillis;
+    private long coveredSince;
+    private String headSha;
+
+    private void add(ListedCommit commit) {
+      put(commit);
+      pushedShas.remove(commit.row().sha());
+    }
+
+    private void put(ListedCommit commit) {
+      var row = commit.row();
+      facts.addListing(row.sha(), row.authorLogin(), row.authorDate(), row.committerDate());
+      if (commit.workType() != null) {
+        facts.recordWorkType(row.sha(), commit.workType());
+      }
+    }
+
+    private void reset() {
+      // Readers may still hold the old table; they keep a consistent, if stale, view.
+      facts = new CommitFactTable();
+      pushedShas.clear();
+      generation++;
+      synced = false;
+      headSha = null;
+    }
+  }
+
+  private static final class IssueLog {
+    private final Map<Integer, IssueRow> rows = new LinkedHashMap<>();
+    private final Map<String, Map<Integer, IssueRow>> rowsByAuthor = new HashMap<>();
+    private long generation;
+    private boolean synced;
+    private long firstSyncMillis;
+    private long coveredSince;
+    private long newestUpdatedAt;
+
+    private void add(IssueRow row) {
+      put(row);
+      newestUpdatedAt = Math.max(newestUpdatedAt, row.updatedAt());
+    }
+
+    private void put(IssueRow row) {
+      var previous = rows.get(row.number());
+      if (previous != null && previous.updatedAt() > row.updatedAt()) {
+        // A webhook delivery already brought a newer state than this listing page.
+        return;
+      }
+      rows.put(row.number(), row);
+      if (previous != null && previous.authorLogin() != null) {
+        var byNumber = rowsByAuthor.get(previous.authorLogin());
+        if (byNumber != null) {
+          byNumber.remove(previous.number());
+        }
+      }
+      if (row.authorLogin() != null) {
+        rowsByAuthor.computeIfAbsent(row.authorLogin(), _ -> new LinkedHashMap<>()).put(row.number(), row);
+      }
+    }
+
+    private void remove(int number) {
+      var previous = rows.remove(number);
+      if (previous != null && previous.authorLogin() != null) {
+        var byNumber = rowsByAuthor.get(previous.authorLogin());
+        if (byNumber != null) {
+          byNumber.remove(number);
+        }
+      }
+    }
+
+    private void reset() {
+      rows.clear();
+      rowsByAuthor.clear();
+      generation++;
+      synced = false;
+      newestUpdatedAt = 0L;
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * REST implementation of {@link CommitHistorySource}: lists the branch through the incrementally
+ * synchronized {@link RepositorySync} log and then looks up each commit's details through the
+ * {@link CommitDetailsFetcher}. {@link #facts} completes the log's own fact table, so only commits
+ * of the requested author whose details were never loaded are looked up; {@link #workTypes} only looks up those whose message
+ * did not settle their work type.
+ */
+public final class RestCommitHistorySource implements CommitHistorySource {
+
+  private final WebClient webClient;
+  private final RepositorySync repositorySync;
+  private final CommitDetailsFetcher commitDetails;
+  private final WorkTypeClassifier classifier;
+
+  public RestCommitHistorySource(WebClient webClient,
+                                 RepositorySync repositorySync,
+                                 CommitDetailsFetcher commitDetails,
+                                 WorkTypeClassifier classifier) {
+    this.webClient = Objects.requireNonNull(webClient, "webClient must not be null");
+    this.repositorySync = Objects.requireNonNull(repositorySync, "repositorySync must not be null");
+    this.commitDetails = Objects.requireNonNull(commitDetails, "commitDetails must not be null");
+    this.classifier = Objects.requireNonNull(classifier, "classifier must not be null");
+  }
+
+  @Override
+  public Flux<CommitDetail> history(String accessToken,
+                                    String owner,
+                                    String repo,
+                                    String branch,
+                                    String authorLogin,
+                                    OffsetDateTime since) {
+    var commits = repositorySync.commits(accessToken, webClient, owner, repo, branch, since);
+    if (commits.isEmpty() && branch != null && !branch.isBlank()) {
+      commits = repositorySync.commits(accessToken, webClient, owner, repo, null, since);
+    }
+    Map<String, String> authorBySha = new HashMap<>();
+    for (RepositorySync.CommitRow commit : commits) {
+      if (authorLogin == null || authorLogin.equals(commit.authorLogin())) {
+        authorBySha.put(commit.sha(), commit.authorLogin());
+      }
+    }
+    // The listing links commits to GitHub accounts even when a stored projection predates that field.
+    return commitDetails.fetch(accessToken, owner, repo, List.copyOf(authorBySha.keySet()))
+            .map(details -> details.withAuthorLogin(authorBySha.get(details.sha())));
+  }
+
+  @Override
+  public WorkTypeClassifier classifier() {
+    return classifier;
+  }
+
+  @Override
+  public Mono<CommitFactTable> facts(String accessToken,
+                                     String owner,
+                                     String repo,
+                                     String branch,
+                                     String authorLogin,
+                                     OffsetDateTime since) {
+    var facts = branchFacts(accessToken, owner, repo, branch, since);
+    return complete(accessToken, owner, repo, facts, facts.shasWithoutDetails(epochSeconds(since), authorLogin));
+  }
+
+  @Override
+  public Mono<CommitFactTable> workTypes(String accessToken,
+                                         String owner,
+                                         String repo,
+                                         String branch,
+                                         OffsetDateTime since) {
+    var facts = branchFacts(accessToken, owner, repo, branch, since);
+    return complete(accessToken, owner, repo, facts, facts.shasWithoutWorkType(epochSeconds(since)));
+  }
+
+  private CommitFactTable branchFacts(String accessToken,
+                                      String owner,
+                                      String repo,
+                                      String branch,
+                                      OffsetDateTime since) {
+    var table = repositorySync.commitFacts(accessToken, webClient, owner, repo, branch, since);
+    if (table.size() == 0 && branch != null && !branch.isBlank()) {
+      table = repositorySync.commitFacts(accessToken, webClient, owner, repo, null, since);
+    }
+    return table;
+  }
+
+  private Mono<CommitFactTable> complete(String accessToken,
+                                         String owner,
+                                         String repo,
+                                         CommitFactTable facts,
+                                         List<String> shas) {
+    return commitDetails.fetch(accessToken, owner, repo, shas)
+            .doOnNext(details -> facts.recordDetails(details, classifier.classify(details)))
+            .then(Mono.just(facts));
+  }
+
+  private static long epochSeconds(OffsetDateTime since) {
+    return since == null ? Long.MIN_VALUE : since.toEpochSecond();
+  }
+
+}
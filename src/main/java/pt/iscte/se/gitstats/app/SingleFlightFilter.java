@@ -0,0 +1,117 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces identical GitHub GETs that are in flight at the same time. The first caller for a
+ * (URL, token) pair performs the exchange; callers arriving before it completes wait for the same
+ * answer and each receive their own copy of the buffered body. Only bodies whose {@code Content-Length}
+ * is known and within {@code app.github.single-flight.max-body-bytes} are buffered. Any other response
+ * is handed unread to the first waiter that claims it, so it can still be streamed, and the remaining
+ * waiters issue their own exchange.
+ * <p>
+ * A waiter that cancels only detaches itself; the shared exchange is cancelled once every waiter has
+ * gone. Nothing is kept after completion, so a later call always goes upstream (where
+ * {@link ConditionalRequestFilter} can still turn it into a 304).
+ */
+@Component
+public class SingleFlightFilter implements ExchangeFilterFunction {
+
+  private final Map<String, Mono<Shared>> inFlight = new ConcurrentHashMap<>();
+  private final int maxBodyBytes;
+  private final Counter issued;
+  private final Counter coalesced;
+
+  public SingleFlightFilter(@Value("${app.github.single-flight.max-body-bytes:16777216}") int maxBodyBytes,
+                            MeterRegistry meterRegistry) {
+    this.maxBodyBytes = maxBodyBytes;
+    this.issued = Counter.builder("gitstats.upstream.singleflight")
+            .tag("outcome", "issued")
+            .register(meterRegistry);
+    this.coalesced = Counter.builder("gitstats.upstream.singleflight")
+            .tag("outcome", "coalesced")
+            .register(meterRegistry);
+    Gauge.builder("gitstats.upstream.singleflight.in_flight", inFlight, Map::size)
+            .register(meterRegistry);
+    Gauge.builder("gitstats.upstream.singleflight.dedup.ratio", this, SingleFlightFilter::dedupRatio)
+            .register(meterRegistry);
+  }
+
+  /**
+   * The answer shared between waiters: a buffered {@code body} each of them gets a copy of, or, when
+   * {@code body} is null, the unread response itself, which only one waiter may claim.
+   */
+  private record Shared(ClientResponse response, HttpStatusCode status, HttpHeaders headers, byte[] body,
+                        AtomicBoolean claimed) {
+
+    static Shared buffered(ClientResponse response, byte[] body) {
+      return new Shared(response, response.statusCode(), response.headers().asHttpHeaders(), body, null);
+    }
+
+    static Shared unread(ClientResponse response) {
+      return new Shared(response, null, null, null, new AtomicBoolean());
+    }
+
+    Mono<ClientResponse> take(ClientRequest request, ExchangeFunction next) {
+      if (body != null) {
+        return Mono.just(ClientResponses.withBody(response, status, headers, body));
+      }
+      return claimed.compareAndSet(false, true) ? Mono.just(response) : next.exchange(request);
+    }
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    if (request.method() != HttpMethod.GET) {
+      return next.exchange(request);
+    }
+    return Mono.defer(() -> {
+      var key = request.url() + "|" + ConditionalRequestFilter.tokenFingerprint(
+              request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+      var created = new AtomicReference<Mono<Shared>>();
+      var shared = inFlight.computeIfAbsent(key, _ -> {
+        created.set(next.exchange(request)
+                .flatMap(this::share)
+                .doFinally(_ -> inFlight.remove(key, created.get()))
+                .flux()
+                .publish()
+                .refCount(1)
+                .next());
+        return created.get();
+      });
+      (shared == created.get() ? issued : coalesced).increment();
+      return shared.flatMap(answer -> answer.take(request, next));
+    });
+  }
+
+  private Mono<Shared> share(ClientResponse response) {
+    long contentLength = response.headers().asHttpHeaders().getContentLength();
+    if (contentLength < 0 || contentLength > maxBodyBytes) {
+      return Mono.just(Shared.unread(response));
+    }
+    return ClientResponses.readBody(response).map(body -> Shared.buffered(response, body));
+  }
+
+  private double dedupRatio() {
+    double total = issued.count() + coalesced.count();
+    return total == 0 ? 0.0 : coalesced.count() / total;
+  }
+
+}
@@ -0,0 +1,167 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+/**
+ * Decodes GitHub responses straight from the network buffers with Jackson's non-blocking parser,
+ * handing each scalar to a {@link JsonProjection} instead of building a {@code JsonNode} tree.
+ * <p>
+ * Values the projection does not read (commit patches, URLs, nested user objects) are tokenized but
+ * never turned into strings or nodes, so the decoder itself holds no more than the largest single
+ * token and never builds a tree of the response. {@link SingleFlightFilter} and
+ * {@link ConditionalRequestFilter} only buffer bodies whose {@code Content-Length} is within their own
+ * bounds, so large responses reach the decoder as they arrive from the network.
+ */
+final class StreamingJsonDecoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private StreamingJsonDecoder() {
+  }
+
+  /**
+   * Decodes a response whose body is a single JSON object.
+   */
+  static <T> Flux<T> decodeObject(Flux<DataBuffer> body, Supplier<? extends JsonProjection<T>> projection) {
+    return decode(body, 0, projection);
+  }
+
+  /**
+   * Decodes a response whose body is a JSON array of objects, emitting one result per element as
+   * soon as its closing brace has arrived.
+   */
+  static <T> Flux<T> decodeArray(Flux<DataBuffer> body, Supplier<? extends JsonProjection<T>> projection) {
+    return decode(body, 1, projection);
+  }
+
+  private static <T> Flux<T> decode(Flux<DataBuffer> body,
+                                    int elementDepth,
+                                    Supplier<? extends JsonProjection<T>> projection) {
+    return Flux.defer(() -> {
+      var state = new State<T>(elementDepth, projection);
+      return body
+              .concatMapIterable(buffer -> {
+                try {
+                  return state.feed(buffer);
+                } finally {
+                  DataBufferUtils.release(buffer);
+                }
+              })
+              .concatWith(Flux.defer(() -> Flux.fromIterable(state.finish())))
+              .doFinally(_ -> state.close());
+    });
+  }
+
+  private record Frame(String path, boolean array) {}
+
+  private static final class State<T> {
+    private final int elementDepth;
+    private final Supplier<? extends JsonProjection<T>> projection;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private String fieldPath = "";
+    private JsonProjection<T> current;
+
+    State(int elementDepth, Supplier<? extends JsonProjection<T>> projection) {
+      this.elementDepth = elementDepth;
+      this.projection = projection;
+      try {
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    List<T> feed(DataBuffer buffer) {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      try {
+        feeder.feedInput(bytes, 0, bytes.length);
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    List<T> finish() {
+      feeder.endOfInput();
+      try {
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void close() {
+      try {
+        parser.close();
+      } catch (IOException ignored) {
+      }
+    }
+
+    private List<T> drain() throws IOException {
+      List<T> completed = new ArrayList<>();
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+        switch (token) {
+          case START_OBJECT, START_ARRAY -> {
+            var path = valuePath();
+            if (token == JsonToken.START_OBJECT && current == null && frames.size() == elementDepth) {
+              current = projection.get();
+              path = "";
+            }
+            boolean array = token == JsonToken.START_ARRAY;
+            frames.push(new Frame(array ? path + "[]" : path, array));
+          }
+          case END_OBJECT, END_ARRAY -> {
+            var frame = frames.pop();
+            if (token == JsonToken.END_OBJECT && current != null) {
+              if (frames.size() == elementDepth) {
+                completed.add(current.build());
+                current = null;
+              } else {
+                current.endObject(frame.path());
+              }
+            }
+          }
+          case FIELD_NAME -> {
+            var parent = frames.isEmpty() ? "" : frames.peek().path();
+            var name = parser.currentName();
+            fieldPath = parent.isEmpty() ? name : parent + "." + name;
+          }
+          default -> {
+            if (current != null) {
+              current.value(valuePath(), parser);
+            }
+          }
+        }
+      }
+      return completed;
+    }
+
+    private String valuePath() {
+      var top = frames.peek();
+      if (top == null) {
+        return "";
+      }
+      return top.array() ? top.path() : fieldPath;
+    }
+  }
+
+}
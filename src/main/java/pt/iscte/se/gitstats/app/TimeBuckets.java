@@ -0,0 +1,163 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Maps epoch-second timestamps to dense bucket slots of one granularity between two dates, so a
+ * timeline counts events into an {@code int[]} instead of a map keyed by formatted labels. A bucket
+ * is identified by its epoch day, its ISO week (Monday-based, counted from the first Monday after the
+ * epoch) or its month ({@code year * 12 + month - 1}); labels are formatted once per bucket.
+ * <p>
+ * Week labels carry their ISO week-based year ({@code 2026-W07}), so week 7 of two different years
+ * are two different buckets.
+ */
+public final class TimeBuckets {
+
+  private static final long SECONDS_PER_DAY = 86_400L;
+  // 1970-01-05, the first Monday after the epoch.
+  private static final long FIRST_MONDAY = 4L;
+  private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("MMM d", Locale.ENGLISH);
+  private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+
+  public enum Granularity {
+    DAY, WEEK, MONTH;
+
+    /**
+     * Parses a timeline {@code period} parameter, falling back to {@link #DAY}.
+     */
+    public static Granularity of(String period) {
+      return switch (period == null ? "" : period) {
+        case "week" -> WEEK;
+        case "month" -> MONTH;
+        default -> DAY;
+      };
+    }
+
+    public String period() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private final Granularity granularity;
+  private final long first;
+  private final int size;
+
+  private TimeBuckets(Granularity granularity, long first, int size) {
+    this.granularity = granularity;
+    this.first = first;
+    this.size = size;
+  }
+
+  /**
+   * Buckets covering {@code since} to {@code until}, both inclusive.
+   */
+  public static TimeBuckets between(Granularity granularity, LocalDate since, LocalDate until) {
+    Objects.requireNonNull(granularity, "granularity must not be null");
+    long first = index(granularity, since.toEpochDay());
+    long last = index(granularity, until.toEpochDay());
+    if (last < first) {
+      throw new IllegalArgumentException("until must not be before since");
+    }
+    return new TimeBuckets(granularity, first, Math.toIntExact(last - first + 1));
+  }
+
+  /**
+   * The {@code count} buckets ending with the one that contains {@code until}.
+   */
+  public static TimeBuckets lastN(Granularity granularity, LocalDate until, int count) {
+    Objects.requireNonNull(granularity, "granularity must not be null");
+    if (count < 1) {
+      throw new IllegalArgumentException("count must be at least 1");
+    }
+    long last = index(granularity, until.toEpochDay());
+    return new TimeBuckets(granularity, last - count + 1, count);
+  }
+
+  public Granularity granularity() {
+    return granularity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The first day of the first bucket.
+   */
+  public LocalDate since() {
+    return start(0);
+  }
+
+  /**
+   * The first instant of the first bucket, in epoch seconds.
+   */
+  public long sinceEpochSecond() {
+    return startEpochSecond(0);
+  }
+
+  /**
+   * The first instant of bucket {@code slot}, in epoch seconds.
+   */
+  public long startEpochSecond(int slot) {
+    return start(slot).toEpochDay() * SECONDS_PER_DAY;
+  }
+
+  /**
+   * Returns the slot of {@code epochSecond}, or {@code -1} when it falls outside the buckets.
+   */
+  public int slot(long epochSecond) {
+    long slot = index(granularity, Math.floorDiv(epochSecond, SECONDS_PER_DAY)) - first;
+    return slot < 0 || slot >= size ? -1 : (int) slot;
+  }
+
+  /**
+   * Counts {@code epochSecond} into {@code counts}, returning whether it fell inside the buckets.
+   */
+  public boolean add(int[] counts, long epochSecond) {
+    int slot = slot(epochSecond);
+    if (slot < 0) {
+      return false;
+    }
+    counts[slot]++;
+    return true;
+  }
+
+  public int[] newCounts() {
+    return new int[size];
+  }
+
+  public LocalDate start(int slot) {
+    long index = first + slot;
+    return switch (granularity) {
+      case DAY -> LocalDate.ofEpochDay(index);
+      case WEEK -> LocalDate.ofEpochDay(FIRST_MONDAY + index * 7);
+      case MONTH -> LocalDate.of(Math.toIntExact(Math.floorDiv(index, 12)), (int) Math.floorMod(index, 12) + 1, 1);
+    };
+  }
+
+  public String label(int slot) {
+    var start = start(slot);
+    return switch (granularity) {
+      case DAY -> start.format(DAY_LABEL);
+      case WEEK -> String.format(Locale.ROOT, "%d-W%02d",
+              start.get(IsoFields.WEEK_BASED_YEAR), start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+      case MONTH -> start.format(MONTH_LABEL);
+    };
+  }
+
+  private static long index(Granularity granularity, long epochDay) {
+    return switch (granularity) {
+      case DAY -> epochDay;
+      case WEEK -> Math.floorDiv(epochDay - FIRST_MONDAY, 7);
+      case MONTH -> {
+        var date = LocalDate.ofEpochDay(epochDay);
+        yield date.getYear() * 12L + date.getMonthValue() - 1;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,157 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Daily event counts behind the commit, issues and pull-request timelines, kept per repository and
+ * token. The widest window any timeline asks for is loaded once and every granularity is rolled up
+ * from the daily counts, so switching between day, week and month does not call GitHub again.
+ * <p>
+ * Entries expire after {@code app.github.timeline.ttl}, at the end of the UTC day they were loaded on,
+ * when a wider window is requested, or when a webhook reports a change ({@link #invalidate}); the
+ * least recently used ones are dropped beyond {@code max-entries}.
+ */
+@Component
+public class TimelineCache {
+
+  private final RepositorySync repositorySync;
+  private final Duration ttl;
+  private final Map<String, Entry> entries;
+  private final Counter hits;
+  private final Counter misses;
+
+  public TimelineCache(RepositorySync repositorySync,
+                       @Value("${app.github.timeline.ttl:5m}") Duration ttl,
+                       @Value("${app.github.timeline.max-entries:200}") int maxEntries,
+                       MeterRegistry meterRegistry) {
+    this.repositorySync = repositorySync;
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.hits = Counter.builder("gitstats.timeline.hits").register(meterRegistry);
+    this.misses = Counter.builder("gitstats.timeline.misses").register(meterRegistry);
+    Gauge.builder("gitstats.timeline.size", this, TimelineCache::size).register(meterRegistry);
+  }
+
+  private record Entry(DailyActivity activity, long fetchedAtMillis) {}
+
+  /**
+   * Events of a repository counted per UTC day. Issue and pull-request openings only count the ones
+   * still open when the counts were loaded.
+   */
+  public record DailyActivity(TimeBuckets days,
+                              int[] commits,
+                              int[] issuesOpened,
+                              int[] issuesClosed,
+                              int[] pullRequestsOpened,
+                              int[] pullRequestsMerged) {
+
+    /**
+     * Sums the daily counts {@code daily} into {@code target}. Days outside it are left out.
+     */
+    public int[] rollup(int[] daily, TimeBuckets target) {
+      int[] counts = target.newCounts();
+      for (int day = 0; day < days.size(); day++) {
+        if (daily[day] != 0) {
+          int slot = target.slot(days.startEpochSecond(day));
+          if (slot >= 0) {
+            counts[slot] += daily[day];
+          }
+        }
+      }
+      return counts;
+    }
+  }
+
+  /**
+   * Returns the daily activity of {@code owner/repo} from {@code since} to today, loading it when it is
+   * not cached, has expired or starts later than {@code since}.
+   */
+  public DailyActivity get(String accessToken, WebClient webClient, String owner, String repo, LocalDate since) {
+    var key = key(accessToken, owner + "/" + repo);
+    var today = LocalDate.now(ZoneOffset.UTC);
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      var entry = entries.get(key);
+      if (entry != null
+              && now - entry.fetchedAtMillis() < ttl.toMillis()
+              && !entry.activity().days().since().isAfter(since)
+              && entry.activity().days().slot(now / 1000) >= 0) {
+        hits.increment();
+        return entry.activity();
+      }
+    }
+    misses.increment();
+    var activity = load(accessToken, webClient, owner, repo, TimeBuckets.between(TimeBuckets.Granularity.DAY, since, today));
+    synchronized (entries) {
+      entries.put(key, new Entry(activity, now));
+    }
+    return activity;
+  }
+
+  /**
+   * Drops the daily activity of {@code owner/repo} loaded with any token.
+   */
+  public void invalidate(String owner, String repo) {
+    var prefix = (owner + "/" + repo).toLowerCase(Locale.ROOT) + "|";
+    synchronized (entries) {
+      entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+  }
+
+  private DailyActivity load(String accessToken, WebClient webClient, String owner, String repo, TimeBuckets days) {
+    var sinceDateTime = days.since().atStartOfDay(ZoneOffset.UTC).toOffsetDateTime();
+    int[] commits = days.newCounts();
+    for (long authorDate : repositorySync.commitFacts(accessToken, webClient, owner, repo, null, sinceDateTime)
+            .authorDates(days.sinceEpochSecond())) {
+      days.add(commits, authorDate);
+    }
+
+    int[] issuesOpened = days.newCounts();
+    int[] issuesClosed = days.newCounts();
+    int[] pullRequestsOpened = days.newCounts();
+    int[] pullRequestsMerged = days.newCounts();
+    for (RepositorySync.IssueRow row : repositorySync.issues(accessToken, webClient, owner, repo, sinceDateTime)) {
+      if (row.pullRequest()) {
+        if (row.open()) {
+          days.add(pullRequestsOpened, row.createdAt());
+        }
+        if (row.mergedAt() != 0) {
+          days.add(pullRequestsMerged, row.mergedAt());
+        }
+      } else if (row.open()) {
+        days.add(issuesOpened, row.createdAt());
+      } else if (row.closedAt() != 0) {
+        days.add(issuesClosed, row.closedAt());
+      }
+    }
+    return new DailyActivity(days, commits, issuesOpened, issuesClosed, pullRequestsOpened, pullRequestsMerged);
+  }
+
+  private int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static String key(String accessToken, String fullName) {
+    return fullName.toLowerCase(Locale.ROOT) + "|" + ConditionalRequestFilter.tokenFingerprint("Bearer " + accessToken);
+  }
+
+}
@@ -0,0 +1,250 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WatchedRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the dashboard aggregates of the repositories users keep coming back to warm in the
+ * {@link DashboardCache}. Opening a repository's dashboard watches it for the user, and it stays watched
+ * until it has not been opened for {@code app.github.watch.idle-after}; beyond
+ * {@code max-repositories} the least recently opened one is dropped.
+ * <p>
+ * A watched repository is refreshed every {@code refresh-interval}, shifted by a random jitter of up
+ * to {@code jitter} so refreshes do not line up. At most {@code max-concurrent-refreshes} run at once,
+ * on their own threads, and a refresh is put off while the user's token has less than
+ * {@code min-remaining-fraction} of its rate limit left, so interactive requests keep the rest. That
+ * reserve also holds during a refresh: {@link GitHubService#refreshDashboard} gives up at the first call
+ * that would dip into it. Refreshes use the user's authorized client and stop when it is gone.
+ */
+@Component
+public class WatchedRepositories {
+
+  private final GitHubService gitHubService;
+  private final OAuth2AuthorizedClientService authorizedClientService;
+  private final RateLimitFilter rateLimits;
+  private final boolean enabled;
+  private final Duration refreshInterval;
+  private final Duration jitter;
+  private final Duration idleAfter;
+  private final int maxConcurrentRefreshes;
+  private final double minRemainingFraction;
+  private final Map<String, Watch> watches;
+  private final ExecutorService refreshers;
+  private final Counter refreshes;
+  private final Counter failures;
+  private final Counter deferrals;
+  private int running;
+
+  public WatchedRepositories(GitHubService gitHubService,
+                             OAuth2AuthorizedClientService authorizedClientService,
+                             RateLimitFilter rateLimits,
+                             @Value("${app.github.watch.enabled:true}") boolean enabled,
+                             @Value("${app.github.watch.refresh-interval:30m}") Duration refreshInterval,
+                             @Value("${app.github.watch.jitter:5m}") Duration jitter,
+                             @Value("${app.github.watch.idle-after:7d}") Duration idleAfter,
+                             @Value("${app.github.watch.max-repositories:50}") int maxRepositories,
+                             @Value("${app.github.watch.max-concurrent-refreshes:2}") int maxConcurrentRefreshes,
+                             @Value("${app.github.watch.min-remaining-fraction:0.5}") double minRemainingFraction,
+                             MeterRegistry meterRegistry) {
+    this.gitHubService = Objects.requireNonNull(gitHubService);
+    this.authorizedClientService = Objects.requireNonNull(authorizedClientService);
+    this.rateLimits = Objects.requireNonNull(rateLimits);
+    this.enabled = enabled;
+    this.refreshInterval = refreshInterval;
+    this.jitter = jitter;
+    this.idleAfter = idleAfter;
+    this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    this.minRemainingFraction = minRemainingFraction;
+    this.watches = new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Watch> eldest) {
+        return size() > maxRepositories;
+      }
+    };
+    this.refreshers = Executors.newFixedThreadPool(
+            maxConcurrentRefreshes,
+            Thread.ofPlatform().name("watch-refresh-", 0).daemon().factory());
+    this.refreshes = Counter.builder("gitstats.watch.refreshes").register(meterRegistry);
+    this.failures = Counter.builder("gitstats.watch.failures").register(meterRegistry);
+    this.deferrals = Counter.builder("gitstats.watch.deferrals").register(meterRegistry);
+    Gauge.builder("gitstats.watch.size", this, WatchedRepositories::size).register(meterRegistry);
+  }
+
+  /**
+   * A repository watched for one user. Mutable fields are guarded by the watch map.
+   */
+  private static final class Watch {
+    private final String owner;
+    private final String repo;
+    private final String principalName;
+    private final String registrationId;
+    private long lastOpenedMillis;
+    private long nextRefreshMillis;
+    private long lastRefreshedMillis;
+    private boolean refreshing;
+    // A webhook reported a change during the running refresh, which may have missed it.
+    private boolean changedWhileRefreshing;
+
+    private Watch(String owner, String repo, String principalName, String registrationId) {
+      this.owner = owner;
+      this.repo = repo;
+      this.principalName = principalName;
+      this.registrationId = registrationId;
+    }
+  }
+
+  /**
+   * Records that the user opened the dashboard of {@code owner/repo}, watching it when it is not yet.
+   * A new watch gets its first refresh within the jitter.
+   */
+  public void opened(OAuth2AuthenticationToken authentication, String owner, String repo) {
+    if (!enabled || authentication == null) {
+      return;
+    }
+    var principalName = authentication.getName();
+    var registrationId = authentication.getAuthorizedClientRegistrationId();
+    long now = System.currentTimeMillis();
+    synchronized (watches) {
+      var watch = watches.computeIfAbsent(key(owner, repo, principalName, registrationId), _ -> {
+        var added = new Watch(owner, repo, principalName, registrationId);
+        added.nextRefreshMillis = now + randomJitter();
+        return added;
+      });
+      watch.lastOpenedMillis = now;
+    }
+  }
+
+  /**
+   * Makes the watches of {@code owner/repo} due at the next tick, after a webhook reported a change.
+   */
+  public void changed(String owner, String repo) {
+    var prefix = (owner + "/" + repo).toLowerCase(Locale.ROOT) + "|";
+    long now = System.currentTimeMillis();
+    synchronized (watches) {
+      watches.forEach((key, watch) -> {
+        if (key.startsWith(prefix)) {
+          watch.nextRefreshMillis = Math.min(watch.nextRefreshMillis, now);
+          watch.changedWhileRefreshing = watch.refreshing;
+        }
+      });
+    }
+  }
+
+  /**
+   * Lists the repositories watched for the user, most recently opened first.
+   */
+  public List<WatchedRepository> watched(OAuth2AuthenticationToken authentication) {
+    List<WatchedRepository> watched = new ArrayList<>();
+    synchronized (watches) {
+      for (Watch watch : watches.values()) {
+        if (watch.principalName.equals(authentication.getName())
+                && watch.registrationId.equals(authentication.getAuthorizedClientRegistrationId())) {
+          watched.add(new WatchedRepository(watch.owner, watch.repo, watch.lastRefreshedMillis / 1000));
+        }
+      }
+    }
+    return watched.reversed();
+  }
+
+  /**
+   * Starts the refreshes that are due, as long as fewer than {@code max-concurrent-refreshes} run.
+   */
+  @Scheduled(fixedDelayString = "${app.github.watch.tick:PT30S}")
+  public void refreshDue() {
+    if (!enabled) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    synchronized (watches) {
+      watches.values().removeIf(watch -> !watch.refreshing && now - watch.lastOpenedMillis > idleAfter.toMillis());
+      for (Watch watch : watches.values()) {
+        if (running >= maxConcurrentRefreshes) {
+          return;
+        }
+        if (watch.refreshing || watch.nextRefreshMillis > now) {
+          continue;
+        }
+        var client = authorizedClientService.loadAuthorizedClient(watch.registrationId, watch.principalName);
+        if (client == null) {
+          watch.nextRefreshMillis = now + refreshInterval.toMillis() + randomJitter();
+          continue;
+        }
+        var accessToken = client.getAccessToken().getTokenValue();
+        if (!rateLimits.keepsReserve(accessToken, minRemainingFraction)) {
+          deferrals.increment();
+          watch.nextRefreshMillis = now + refreshInterval.toMillis() + randomJitter();
+          continue;
+        }
+        watch.refreshing = true;
+        running++;
+        refreshers.execute(() -> refresh(watch, accessToken));
+      }
+    }
+  }
+
+  private void refresh(Watch watch, String accessToken) {
+    boolean refreshed = false;
+    try {
+      gitHubService.refreshDashboard(accessToken, watch.owner, watch.repo);
+      refreshed = true;
+      refreshes.increment();
+    } catch (RuntimeException e) {
+      // Includes RateLimitExceededException; the next attempt comes with the next interval.
+      failures.increment();
+    } finally {
+      long now = System.currentTimeMillis();
+      synchronized (watches) {
+        if (refreshed) {
+          watch.lastRefreshedMillis = now;
+        }
+        watch.nextRefreshMillis = watch.changedWhileRefreshing
+                ? now
+                : now + refreshInterval.toMillis() + randomJitter();
+        watch.changedWhileRefreshing = false;
+        watch.refreshing = false;
+        running--;
+      }
+    }
+  }
+
+  private long randomJitter() {
+    long bound = jitter.toMillis();
+    return bound <= 0 ? 0L : ThreadLocalRandom.current().nextLong(bound + 1);
+  }
+
+  private int size() {
+    synchronized (watches) {
+      return watches.size();
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    refreshers.shutdownNow();
+  }
+
+  private static String key(String owner, String repo, String principalName, String registrationId) {
+    return (owner + "/" + repo).toLowerCase(Locale.ROOT) + "|" + registrationId + "|" + principalName;
+  }
+
+}
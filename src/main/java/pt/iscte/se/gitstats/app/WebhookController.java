@@ -0,0 +1,62 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Receives GitHub webhook deliveries. The endpoint needs no session: every delivery must carry a valid
+ * {@code X-Hub-Signature-256}, see {@link GitHubWebhooks}.
+ */
+@RestController
+@RequestMapping("/webhooks")
+public class WebhookController {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final GitHubWebhooks webhooks;
+
+  @Autowired
+  public WebhookController(GitHubWebhooks webhooks) {
+    this.webhooks = Objects.requireNonNull(webhooks);
+  }
+
+  @PostMapping("/github")
+  public ResponseEntity<?> github(@RequestHeader(value = "X-GitHub-Event", required = false) String event,
+                                  @RequestHeader(value = "X-GitHub-Delivery", required = false) String delivery,
+                                  @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature,
+                                  @RequestBody byte[] body) {
+    if (!webhooks.isEnabled()) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+          .body(Map.of("message", "Webhooks are not configured"));
+    }
+    if (!webhooks.verify(body, signature)) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+          .body(Map.of("message", "Invalid signature"));
+    }
+    JsonNode payload;
+    try {
+      payload = objectMapper.readTree(body);
+    } catch (IOException e) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+          .body(Map.of("message", "Invalid payload", "detail", e.getMessage()));
+    }
+    var result = webhooks.handle(event, payload);
+    return ResponseEntity.ok(Map.of(
+        "event", event == null ? "" : event,
+        "delivery", delivery == null ? "" : delivery,
+        "result", result
+    ));
+  }
+
+}
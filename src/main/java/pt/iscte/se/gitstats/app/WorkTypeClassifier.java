@@ -0,0 +1,152 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Guesses the kind of work a commit is from its message and the files it touches. A conventional-commit
+ * type ({@code feat:}, {@code fix(parser):}, ...) decides on its own; otherwise documentation wins over
+ * tests, tests over bug fixes, bug fixes over refactorings, and anything else is a feature.
+ * <p>
+ * The keywords of {@link WorkTypeRules} are compiled into one {@link KeywordMatcher} for messages and
+ * one for paths, so a message or a path is scanned once whatever the number of rules.
+ */
+@Component
+public final class WorkTypeClassifier {
+
+  private static final long DOCUMENTATION = bit(WorkType.DOCUMENTATION);
+  private static final long TEST = bit(WorkType.TEST);
+  private static final long BUGFIX = bit(WorkType.BUGFIX);
+  private static final long REFACTOR = bit(WorkType.REFACTOR);
+  private static final WorkTypeClassifier DEFAULTS = new WorkTypeClassifier(WorkTypeRules.defaults());
+
+  private final String[] conventionalTypes;
+  private final WorkType[] conventionalWorkTypes;
+  private final KeywordMatcher messages;
+  private final KeywordMatcher paths;
+
+  @Autowired
+  public WorkTypeClassifier(WorkTypeRules rules) {
+    int count = rules.conventionalTypes().size();
+    this.conventionalTypes = new String[count];
+    this.conventionalWorkTypes = new WorkType[count];
+    int i = 0;
+    for (Map.Entry<String, WorkType> type : rules.conventionalTypes().entrySet()) {
+      conventionalTypes[i] = type.getKey();
+      conventionalWorkTypes[i++] = type.getValue();
+    }
+    this.messages = compile(rules.messageKeywords());
+    this.paths = compile(rules.pathKeywords());
+  }
+
+  /**
+   * The classifier with the built-in {@link WorkTypeRules#defaults() rules}.
+   */
+  public static WorkTypeClassifier defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns the work type {@code message} settles without looking at the files, or {@code null} when
+   * the files could still change it. Only a conventional-commit type or a documentation keyword
+   * (documentation wins over anything the files reveal) is conclusive.
+   */
+  public WorkType classifyMessage(String message) {
+    var conventional = conventionalType(message);
+    if (conventional != null) {
+      return conventional;
+    }
+    return (messages.scan(message) & DOCUMENTATION) != 0 ? WorkType.DOCUMENTATION : null;
+  }
+
+  public WorkType classify(CommitDetail details) {
+    String message = details.message();
+    var conventional = conventionalType(message);
+    if (conventional != null) {
+      return conventional;
+    }
+    long found = messages.scan(message);
+    int totalLinesChanged = 0;
+    int testLinesChanged = 0;
+    for (CommitDetail.FileChange file : details.files()) {
+      long path = paths.scan(file.filename());
+      found |= path & DOCUMENTATION;
+      int delta = file.additions() + file.deletions();
+      totalLinesChanged += delta;
+      if ((path & TEST) != 0) {
+        testLinesChanged += delta;
+      }
+    }
+    boolean isMostlyTests = totalLinesChanged > 0 && testLinesChanged << 1 >= totalLinesChanged;
+    if ((found & DOCUMENTATION) != 0) {
+      return WorkType.DOCUMENTATION;
+    } else if (isMostlyTests || (found & TEST) != 0) {
+      return WorkType.TEST;
+    } else if ((found & BUGFIX) != 0) {
+      return WorkType.BUGFIX;
+    } else if ((found & REFACTOR) != 0) {
+      return WorkType.REFACTOR;
+    }
+    return WorkType.FEATURE;
+  }
+
+  /**
+   * Reads a leading {@code type}, {@code type(scope)} or {@code type!} followed by a colon, and maps
+   * the type without copying the message.
+   */
+  private WorkType conventionalType(String message) {
+    int length = message.length();
+    int i = 0;
+    while (i < length && Character.isWhitespace(message.charAt(i))) {
+      i++;
+    }
+    int start = i;
+    while (i < length && isAsciiLetter(message.charAt(i))) {
+      i++;
+    }
+    int end = i;
+    if (end == start) {
+      return null;
+    }
+    if (i < length && message.charAt(i) == '(') {
+      i = message.indexOf(')', i);
+      if (i < 0) {
+        return null;
+      }
+      i++;
+    }
+    if (i < length && message.charAt(i) == '!') {
+      i++;
+    }
+    if (i >= length || message.charAt(i) != ':') {
+      return null;
+    }
+    for (int t = 0; t < conventionalTypes.length; t++) {
+      var type = conventionalTypes[t];
+      if (type.length() == end - start && message.regionMatches(true, start, type, 0, type.length())) {
+        return conventionalWorkTypes[t];
+      }
+    }
+    return null;
+  }
+
+  private static KeywordMatcher compile(Map<WorkType, List<String>> keywords) {
+    var builder = KeywordMatcher.builder();
+    keywords.forEach((type, words) -> words.forEach(word -> builder.add(word, type.ordinal())));
+    return builder.build();
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static long bit(WorkType type) {
+    return 1L << type.ordinal();
+  }
+
+}
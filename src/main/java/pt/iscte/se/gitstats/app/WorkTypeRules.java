@@ -0,0 +1,81 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Keywords behind {@link WorkTypeClassifier}, bound from {@code app.github.work-types}. Configured
+ * entries are added to the defaults; a work type listed under {@code message-keywords} or
+ * {@code path-keywords} replaces its default keywords.
+ * <ul>
+ *   <li>{@code conventional-types}: conventional-commit type to work type ({@code feat: FEATURE});</li>
+ *   <li>{@code message-keywords}: keywords of a commit message per work type; {@code FEATURE} is the
+ *   fallback and needs none;</li>
+ *   <li>{@code path-keywords}: keywords of a touched file's path, for {@code DOCUMENTATION} and
+ *   {@code TEST} only.</li>
+ * </ul>
+ * Keywords are matched ignoring case; {@code ^word} only matches at the start and {@code word$} only
+ * at the end (see {@link KeywordMatcher}).
+ */
+@ConfigurationProperties("app.github.work-types")
+public record WorkTypeRules(Map<String, WorkType> conventionalTypes,
+                            Map<WorkType, List<String>> messageKeywords,
+                            Map<WorkType, List<String>> pathKeywords) {
+
+  private static final Map<String, WorkType> DEFAULT_CONVENTIONAL_TYPES = Map.ofEntries(
+          Map.entry("feat", WorkType.FEATURE),
+          Map.entry("feature", WorkType.FEATURE),
+          Map.entry("fix", WorkType.BUGFIX),
+          Map.entry("bugfix", WorkType.BUGFIX),
+          Map.entry("hotfix", WorkType.BUGFIX),
+          Map.entry("docs", WorkType.DOCUMENTATION),
+          Map.entry("doc", WorkType.DOCUMENTATION),
+          Map.entry("test", WorkType.TEST),
+          Map.entry("tests", WorkType.TEST),
+          Map.entry("refactor", WorkType.REFACTOR),
+          Map.entry("style", WorkType.REFACTOR));
+
+  private static final Map<WorkType, List<String>> DEFAULT_MESSAGE_KEYWORDS = Map.of(
+          WorkType.DOCUMENTATION, List.of("doc", "readme", "documentation", "asciidoc", "manual"),
+          WorkType.TEST, List.of("test ", "^test", "tests", "coverage"),
+          WorkType.BUGFIX, List.of("fix", "bug", "hotfix", "patch", "defect", "error", "regression"),
+          WorkType.REFACTOR, List.of("refactor", "cleanup", "tidy", "rename", "reformat", "style", "lint"));
+
+  private static final Map<WorkType, List<String>> DEFAULT_PATH_KEYWORDS = Map.of(
+          WorkType.DOCUMENTATION, List.of("/docs/", ".md$", ".rst$", "readme$", ".adoc$", ".asciidoc$", ".txt$"),
+          WorkType.TEST, List.of("/test/", "/tests/", "__tests__", "test.java$",
+                  ".spec.ts$", ".test.ts$", ".spec.js$", ".test.js$"));
+
+  public WorkTypeRules {
+    if (conventionalTypes != null) {
+      Map<String, WorkType> merged = new HashMap<>(DEFAULT_CONVENTIONAL_TYPES);
+      merged.putAll(conventionalTypes);
+      conventionalTypes = Map.copyOf(merged);
+    } else {
+      conventionalTypes = DEFAULT_CONVENTIONAL_TYPES;
+    }
+    messageKeywords = withDefaults(messageKeywords, DEFAULT_MESSAGE_KEYWORDS);
+    pathKeywords = withDefaults(pathKeywords, DEFAULT_PATH_KEYWORDS);
+  }
+
+  public static WorkTypeRules defaults() {
+    return new WorkTypeRules(null, null, null);
+  }
+
+  private static Map<WorkType, List<String>> withDefaults(Map<WorkType, List<String>> configured,
+                                                          Map<WorkType, List<String>> defaults) {
+    Map<WorkType, List<String>> merged = new EnumMap<>(WorkType.class);
+    merged.putAll(defaults);
+    if (configured != null) {
+      configured.forEach((type, keywords) -> merged.put(type, List.copyOf(keywords)));
+    }
+    return Map.copyOf(merged);
+  }
+
+}
@@ -1,5 +1,7 @@
 package pt.iscte.se.gitstats.dto;
 
+import java.util.List;
+
 public record CommitStats(
   String authorLogin,
   CommitPeriod period,
@@ -14,6 +16,7 @@ public record CommitStats(
   // --- File stats ---
   int distinctFilesTouched,
   int topFilesModifiedCount,
+  List<FileChurn> topFiles,
   int mainLanguagesCount,
 
   // --- Issues activity ---
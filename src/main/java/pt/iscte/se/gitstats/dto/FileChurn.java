@@ -0,0 +1,6 @@
+package pt.iscte.se.gitstats.dto;
+
+public record FileChurn(
+  String path,
+  long changes
+) {}
@@ -0,0 +1,10 @@
+package pt.iscte.se.gitstats.dto;
+
+import java.util.List;
+
+public record HotFiles(
+    String owner,
+    String repo,
+    CommitPeriod period,
+    List<FileChurn> files
+) {}
@@ -0,0 +1,7 @@
+package pt.iscte.se.gitstats.dto;
+
+public record RateLimitBudget(
+  int limit,
+  int remaining,
+  long resetEpochSeconds
+) {}
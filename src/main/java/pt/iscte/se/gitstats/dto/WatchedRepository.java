@@ -0,0 +1,7 @@
+package pt.iscte.se.gitstats.dto;
+
+public record WatchedRepository(
+  String owner,
+  String repo,
+  long lastRefreshedEpochSeconds
+) {}
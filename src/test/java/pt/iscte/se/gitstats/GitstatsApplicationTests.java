@@ -3,7 +3,8 @@ package pt.iscte.se.gitstats;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// An in-memory commit store, so the test leaves no database behind in the working tree.
+@SpringBootTest(properties = "app.github.commit-store.url=jdbc:h2:mem:commit-store")
 class GitstatsApplicationTests {
 
   @Test
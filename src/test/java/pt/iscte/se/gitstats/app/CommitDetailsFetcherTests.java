@@ -0,0 +1,138 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitDetailsFetcherTests {
+
+  private static final int COMMITS = 60;
+
+  private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+  private final List<CommitDetailStore> stores = new ArrayList<>();
+  private StubGitHubServer server;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    server = new StubGitHubServer().route("/repos/kyan17/gitstats/commits/", this::handle);
+  }
+
+  @AfterEach
+  void stopStubServer() throws SQLException {
+    server.close();
+    for (var store : stores) {
+      store.close();
+    }
+  }
+
+  /**
+   * Answers {@code /commits/{sha}} with statistics derived from the sha, so every commit differs.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    var path = exchange.getRequestURI().getPath();
+    var sha = path.substring(path.lastIndexOf('/') + 1);
+    lookups.computeIfAbsent(sha, _ -> new AtomicInteger()).incrementAndGet();
+    int n = Integer.parseInt(sha, 16);
+    var body = """
+        {"sha": "%s", "author": {"login": "%s"},
+         "commit": {"author": {"date": "2026-10-%02dT12:00:00Z"}, "message": "commit %d"},
+         "stats": {"additions": %d, "deletions": %d},
+         "files": [{"filename": "src/File%d.java", "additions": %d, "deletions": %d, "patch": "@@ -1 +1 @@"}]}
+        """.formatted(sha, n % 2 == 0 ? "kyan17" : "ilanpiczenik", 1 + n % 28, n, 10 * n, n, n % 7, 10 * n, n);
+    StubGitHubServer.respond(exchange, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void concurrentLookupsGiveTheSameAggregatesAsSerialOnes() {
+    var shas = shasWithDuplicates();
+
+    var serial = aggregate(fetcher(1).fetch("token", "kyan17", "gitstats", shas).collectList().block());
+    var serialLookups = Map.copyOf(lookups.entrySet().stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get())));
+    lookups.clear();
+    var concurrent = aggregate(fetcher(8).fetch("token", "kyan17", "gitstats", shas).collectList().block());
+
+    assertThat(concurrent).isEqualTo(serial);
+    assertThat(serial.commits()).isEqualTo(COMMITS);
+    assertThat(serial.shas()).isEqualTo(new TreeSet<>(shas));
+    // Each distinct sha is looked up exactly once, whatever the concurrency.
+    assertThat(serialLookups).hasSize(COMMITS).allSatisfy((sha, count) -> assertThat(count).isEqualTo(1));
+    assertThat(lookups).hasSize(COMMITS).allSatisfy((sha, count) -> assertThat(count.get()).isEqualTo(1));
+  }
+
+  @Test
+  void servesStoredCommitsWithoutLookingThemUpAgain() {
+    var fetcher = fetcher(8);
+    var shas = shasWithDuplicates();
+
+    var first = aggregate(fetcher.fetch("token", "kyan17", "gitstats", shas).collectList().block());
+    lookups.clear();
+    var second = aggregate(fetcher.fetch("token", "kyan17", "gitstats", shas).collectList().block());
+
+    assertThat(second).isEqualTo(first);
+    assertThat(lookups).isEmpty();
+  }
+
+  @Test
+  void keepsTheSerialOrderWithOneLookupInFlight() {
+    var shas = shasWithDuplicates();
+
+    var details = fetcher(1).fetch("token", "kyan17", "gitstats", shas).collectList().block();
+
+    assertThat(details).extracting(CommitDetail::sha).containsExactlyElementsOf(shas.stream().distinct().toList());
+  }
+
+  private record Aggregate(int commits, long additions, long deletions, Set<String> shas, Set<String> files,
+                           Map<String, Long> commitsByAuthor) {}
+
+  private static Aggregate aggregate(List<CommitDetail> details) {
+    return new Aggregate(
+        details.size(),
+        details.stream().mapToLong(CommitDetail::additions).sum(),
+        details.stream().mapToLong(CommitDetail::deletions).sum(),
+        details.stream().map(CommitDetail::sha).collect(Collectors.toCollection(TreeSet::new)),
+        details.stream()
+            .flatMap(detail -> detail.files().stream())
+            .map(CommitDetail.FileChange::filename)
+            .collect(Collectors.toCollection(TreeSet::new)),
+        details.stream().collect(Collectors.groupingBy(CommitDetail::authorLogin, Collectors.counting())));
+  }
+
+  /**
+   * Every sha of the history, with every third one listed a second time further on.
+   */
+  private static List<String> shasWithDuplicates() {
+    var shas = new ArrayList<>(IntStream.rangeClosed(1, COMMITS).mapToObj(n -> "%040x".formatted(n)).toList());
+    for (int n = 3; n <= COMMITS; n += 3) {
+      shas.add("%040x".formatted(n));
+    }
+    return shas;
+  }
+
+  private CommitDetailsFetcher fetcher(int concurrency) {
+    var store = new CommitDetailStore("jdbc:h2:mem:" + UUID.randomUUID(), 10_000, new SimpleMeterRegistry());
+    stores.add(store);
+    return new CommitDetailsFetcher(server.webClient(), store,
+        new RateLimitFilter(0.5, Duration.ofSeconds(60), 2), concurrency);
+  }
+
+}
@@ -0,0 +1,60 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitFactTableTests {
+
+  private static final long WEEK = OffsetDateTime.parse("2026-10-09T12:00:00Z").toEpochSecond();
+  private static final long MONTH = OffsetDateTime.parse("2026-09-16T12:00:00Z").toEpochSecond();
+
+  @Test
+  void sumsSeveralWindowsInOnePassLikeOneWindowAtATime() {
+    var table = new CommitFactTable();
+    // A commit exactly on each window start and one a second before it, plus an older one and another author's.
+    commit(table, 1, "kyan17", WEEK, 10, 1, "src/Week.java");
+    commit(table, 2, "kyan17", WEEK - 1, 20, 2, "src/BeforeWeek.java");
+    commit(table, 3, "kyan17", MONTH, 40, 4, "src/Month.java");
+    commit(table, 4, "kyan17", MONTH - 1, 80, 8, "src/BeforeMonth.java");
+    commit(table, 5, "kyan17", MONTH - 86_400, 160, 16, "src/Week.java");
+    commit(table, 6, "ilanpiczenik", WEEK + 60, 320, 32, "src/Week.java");
+    long[] sinces = {WEEK, MONTH, Long.MIN_VALUE};
+
+    var totals = table.totals(sinces, "kyan17", CommitFactTable.EXACT);
+
+    for (int w = 0; w < sinces.length; w++) {
+      assertThat(totals[w]).isEqualTo(table.totals(sinces[w], "kyan17", CommitFactTable.EXACT));
+    }
+    assertThat(List.of(totals[0].commitCount(), totals[1].commitCount(), totals[2].commitCount()))
+        .containsExactly(1, 3, 5);
+    assertThat(List.of(totals[0].linesAdded(), totals[1].linesAdded(), totals[2].linesAdded()))
+        .containsExactly(10L, 70L, 310L);
+    assertThat(List.of(totals[0].distinctFiles(), totals[1].distinctFiles(), totals[2].distinctFiles()))
+        .containsExactly(1, 3, 4);
+  }
+
+  @Test
+  void countsNothingForAnUnknownAuthor() {
+    var table = new CommitFactTable();
+    commit(table, 1, "kyan17", WEEK, 10, 1, "README.md");
+
+    var totals = table.totals(new long[] {WEEK, Long.MIN_VALUE}, "nobody", CommitFactTable.EXACT);
+
+    assertThat(totals).allSatisfy(window -> assertThat(window.commitCount()).isZero());
+  }
+
+  private static void commit(CommitFactTable table, int n, String login, long date, int additions, int deletions,
+                             String file) {
+    var sha = "%016x%024x".formatted(n, n);
+    table.addListing(sha, login, date, date);
+    table.recordDetails(new CommitDetail(sha, login, null, "commit " + n, additions, deletions, 1,
+        List.of(new CommitDetail.FileChange(file, additions, deletions))), WorkType.FEATURE);
+  }
+
+}
@@ -0,0 +1,132 @@
+package pt.iscte.se.gitstats.app;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionalRequestFilterTests {
+
+  private static final String LAST_MODIFIED = "Fri, 16 Oct 2026 08:41:12 GMT";
+
+  private final Deque<ClientResponse> answers = new ArrayDeque<>();
+  private final List<ClientRequest> sent = new CopyOnWriteArrayList<>();
+
+  /**
+   * Answers with the responses queued in {@link #answers}, in order.
+   */
+  private final ExchangeFunction next = request -> {
+    sent.add(request);
+    return Mono.just(answers.removeFirst());
+  };
+
+  @Test
+  void revalidatesAndReplaysTheRememberedBodyOnNotModified() {
+    var filter = new ConditionalRequestFilter(1 << 20, 1 << 16, new SimpleMeterRegistry());
+    answers.add(ok("{\"id\":1}", "\"abc\""));
+    answers.add(ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+
+    assertThat(body(filter, get("/repos/kyan17/gitstats", "token"))).isEqualTo("{\"id\":1}");
+    var replayed = filter.filter(get("/repos/kyan17/gitstats", "token"), next).block();
+
+    var revalidation = sent.get(1).headers();
+    assertThat(revalidation.getFirst(HttpHeaders.IF_NONE_MATCH)).isEqualTo("\"abc\"");
+    assertThat(revalidation.getFirst(HttpHeaders.IF_MODIFIED_SINCE)).isEqualTo(LAST_MODIFIED);
+    assertThat(replayed.statusCode().value()).isEqualTo(200);
+    assertThat(replayed.headers().contentType()).contains(MediaType.APPLICATION_JSON);
+    assertThat(replayed.bodyToMono(String.class).block()).isEqualTo("{\"id\":1}");
+  }
+
+  @Test
+  void keepsEntriesApartPerToken() {
+    var filter = new ConditionalRequestFilter(1 << 20, 1 << 16, new SimpleMeterRegistry());
+    answers.add(ok("{\"id\":1}", "\"abc\""));
+    answers.add(ok("{\"id\":1}", "\"abc\""));
+
+    body(filter, get("/repos/kyan17/gitstats", "token"));
+    body(filter, get("/repos/kyan17/gitstats", "another token"));
+
+    assertThat(sent.get(1).headers().getFirst(HttpHeaders.IF_NONE_MATCH)).isNull();
+  }
+
+  @Test
+  void passesBodiesOfUnknownOrExcessiveLengthThroughWithoutRememberingThem() {
+    var filter = new ConditionalRequestFilter(1 << 20, 16, new SimpleMeterRegistry());
+    answers.add(ClientResponse.create(HttpStatus.OK)
+        .header(HttpHeaders.ETAG, "\"abc\"")
+        .body("{\"id\":1}")
+        .build());
+    answers.add(ok("{\"id\":1,\"name\":\"gitstats\"}", "\"def\""));
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+
+    assertThat(body(filter, get("/repos/kyan17/gitstats", "token"))).isEqualTo("{\"id\":1}");
+    assertThat(body(filter, get("/repos/kyan17/gitstats/languages", "token")))
+        .isEqualTo("{\"id\":1,\"name\":\"gitstats\"}");
+    body(filter, get("/repos/kyan17/gitstats", "token"));
+    body(filter, get("/repos/kyan17/gitstats/languages", "token"));
+
+    assertThat(sent.get(2).headers().getFirst(HttpHeaders.IF_NONE_MATCH)).isNull();
+    assertThat(sent.get(3).headers().getFirst(HttpHeaders.IF_NONE_MATCH)).isNull();
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedEntryBeyondTheByteBound() {
+    var body = "x".repeat(1000);
+    // Each entry weighs its body plus twice its key (URL and token hash): room for two of them.
+    var filter = new ConditionalRequestFilter(2500, 1 << 16, new SimpleMeterRegistry());
+    answers.add(ok(body, "\"a\""));
+    answers.add(ok(body, "\"b\""));
+    answers.add(ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+    answers.add(ok(body, "\"c\""));
+    answers.add(ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+    answers.add(ok(body, "\"b\""));
+
+    body(filter, get("/repos/kyan17/gitstats/a", "token"));
+    body(filter, get("/repos/kyan17/gitstats/b", "token"));
+    // Revalidating a makes b the least recently used entry.
+    body(filter, get("/repos/kyan17/gitstats/a", "token"));
+    body(filter, get("/repos/kyan17/gitstats/c", "token"));
+    body(filter, get("/repos/kyan17/gitstats/a", "token"));
+    body(filter, get("/repos/kyan17/gitstats/b", "token"));
+
+    assertThat(sent.get(4).headers().getFirst(HttpHeaders.IF_NONE_MATCH)).isEqualTo("\"a\"");
+    assertThat(sent.get(5).headers().getFirst(HttpHeaders.IF_NONE_MATCH)).isNull();
+  }
+
+  private String body(ConditionalRequestFilter filter, ClientRequest request) {
+    return filter.filter(request, next).flatMap(response -> response.bodyToMono(String.class)).block();
+  }
+
+  private static ClientRequest get(String path, String token) {
+    return ClientRequest.create(HttpMethod.GET, URI.create("https://api.github.com" + path))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .build();
+  }
+
+  private static ClientResponse ok(String body, String etag) {
+    return ClientResponse.create(HttpStatus.OK)
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .header(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.getBytes(StandardCharsets.UTF_8).length))
+        .header(HttpHeaders.ETAG, etag)
+        .header(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED)
+        .body(body)
+        .build();
+  }
+
+}
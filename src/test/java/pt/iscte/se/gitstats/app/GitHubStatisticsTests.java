@@ -0,0 +1,77 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubStatisticsTests {
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private volatile int computingCalls;
+  private volatile int errorStatus;
+  private StubGitHubServer server;
+  private WebClient webClient;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    server = new StubGitHubServer().route("/repos/kyan17/gitstats/stats/contributors", this::handle);
+    webClient = server.webClient();
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    calls.incrementAndGet();
+    if (errorStatus != 0) {
+      StubGitHubServer.respond(exchange, errorStatus);
+    } else if (calls.get() <= computingCalls) {
+      StubGitHubServer.respond(exchange, 202);
+    } else {
+      StubGitHubServer.respond(exchange, "rest/stats-contributors.json");
+    }
+  }
+
+  @Test
+  void retriesWhileGitHubIsComputingAndSumsTheWeeks() {
+    computingCalls = 2;
+    var statistics = new GitHubStatistics(4, Duration.ofMillis(10));
+
+    var totals = statistics.contributorTotals("token", webClient, "kyan17", "gitstats").orElseThrow();
+
+    assertThat(calls.get()).isEqualTo(3);
+    assertThat(totals.get("kyan17")).isEqualTo(new GitHubStatistics.ContributorTotals("kyan17", 5, 310L, 24L));
+    assertThat(totals.get("ilanpiczenik")).isEqualTo(new GitHubStatistics.ContributorTotals("ilanpiczenik", 2, 52L, 8L));
+  }
+
+  @Test
+  void reportsNothingWhenGitHubIsStillComputing() {
+    computingCalls = Integer.MAX_VALUE;
+    var statistics = new GitHubStatistics(3, Duration.ofMillis(10));
+
+    assertThat(statistics.contributorTotals("token", webClient, "kyan17", "gitstats")).isEmpty();
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  void reportsNothingWhenGitHubAnswersWithAnError() {
+    var statistics = new GitHubStatistics(3, Duration.ofMillis(10));
+
+    for (int status : new int[] {403, 404, 500}) {
+      errorStatus = status;
+      assertThat(statistics.contributorTotals("token", webClient, "kyan17", "gitstats")).isEmpty();
+    }
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+}
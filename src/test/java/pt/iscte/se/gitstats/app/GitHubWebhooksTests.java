@@ -0,0 +1,195 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.CommitPeriod;
+import pt.iscte.se.gitstats.dto.ContributionStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class GitHubWebhooksTests {
+
+  private static final byte[] SECRET = "It's a Secret to Everybody".getBytes(StandardCharsets.UTF_8);
+  private static final String PREVIOUS_HEAD = "6113728f27ae82c7b1a177c8d03f9e96e0adf246";
+  private static final String PUSHED = "0d1a26e67d8f5eaf1f6ba5c57fc3c7d91ac0fd1c";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final AtomicInteger commitListings = new AtomicInteger();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private StubGitHubServer server;
+  private WebClient webClient;
+  private RepositorySync repositorySync;
+  private TimelineCache timelines;
+  private DashboardCache dashboards;
+  private WatchedRepositories watchedRepositories;
+  private GitHubWebhooks webhooks;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    server = new StubGitHubServer()
+        .route("/repos/kyan17/gitstats/commits", exchange -> {
+          commitListings.incrementAndGet();
+          StubGitHubServer.respond(exchange, "rest/commits.json");
+        })
+        .route("/repos/kyan17/gitstats/issues", exchange -> StubGitHubServer.respond(exchange, "rest/issues.json"));
+    webClient = server.webClient();
+    repositorySync = new RepositorySync(50, Duration.ofHours(24), 1, WorkTypeClassifier.defaults());
+    timelines = new TimelineCache(repositorySync, Duration.ofMinutes(5), 200, meterRegistry);
+    dashboards = new DashboardCache(Duration.ofHours(1), 1000, meterRegistry);
+    watchedRepositories = mock(WatchedRepositories.class);
+    webhooks = new GitHubWebhooks(repositorySync, timelines, dashboards, watchedRepositories, "secret");
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.close();
+  }
+
+  @Test
+  void acceptsOnlyTheSignatureOfTheExactBody() throws IOException {
+    byte[] body = StubGitHubServer.recorded("webhooks/push.json");
+    var signature = "sha256=" + HexFormat.of().formatHex(GitHubWebhooks.hmacSha256(SECRET, body));
+
+    assertThat(GitHubWebhooks.signatureMatches(SECRET, body, signature)).isTrue();
+    assertThat(GitHubWebhooks.signatureMatches(SECRET, body, signature.toUpperCase().replace("SHA256=", "sha256="))).isTrue();
+    assertThat(GitHubWebhooks.signatureMatches("another secret".getBytes(StandardCharsets.UTF_8), body, signature)).isFalse();
+    body[body.length - 2] ^= 1;
+    assertThat(GitHubWebhooks.signatureMatches(SECRET, body, signature)).isFalse();
+    assertThat(GitHubWebhooks.signatureMatches(SECRET, body, null)).isFalse();
+    assertThat(GitHubWebhooks.signatureMatches(SECRET, body, "sha256=not-hex")).isFalse();
+  }
+
+  @Test
+  void readsThePushedCommits() throws IOException {
+    var payload = objectMapper.readTree(StubGitHubServer.recorded("webhooks/push.json"));
+
+    var commits = GitHubWebhooks.pushedCommits(payload);
+
+    long date = OffsetDateTime.parse("2026-10-16T08:41:12Z").toEpochSecond();
+    assertThat(commits).containsExactly(new RepositorySync.PushedCommit(
+        new RepositorySync.CommitRow("0d1a26e67d8f5eaf1f6ba5c57fc3c7d91ac0fd1c", "kyan17", date, date),
+        "fix: keep week labels apart across years"));
+  }
+
+  @Test
+  void readsIssuesAndPullRequestsLikeTheListing() throws IOException {
+    var pullRequest = objectMapper.readTree(StubGitHubServer.recorded("webhooks/pull_request-closed.json")).path("pull_request");
+    var issue = objectMapper.readTree(StubGitHubServer.recorded("webhooks/issues-opened.json")).path("issue");
+
+    long merged = OffsetDateTime.parse("2026-10-16T10:15:30Z").toEpochSecond();
+    long opened = OffsetDateTime.parse("2026-10-16T11:00:00Z").toEpochSecond();
+    assertThat(GitHubWebhooks.issueRow(pullRequest, true)).isEqualTo(new RepositorySync.IssueRow(
+        42, "ilanpiczenik", true, false,
+        OffsetDateTime.parse("2026-10-14T08:00:00Z").toEpochSecond(), merged, merged, merged));
+    assertThat(GitHubWebhooks.issueRow(issue, false)).isEqualTo(new RepositorySync.IssueRow(
+        43, "kyan17", false, true, opened, 0L, 0L, opened));
+  }
+
+  @Test
+  void leavesRepositoriesNobodyOpenedAlone() throws IOException {
+    assertThat(webhooks.handle("push", delivery("webhooks/push.json"))).isEqualTo("not-loaded");
+    assertThat(webhooks.handle("issues", delivery("webhooks/issues-opened.json"))).isEqualTo("not-loaded");
+    assertThat(webhooks.handle("star", delivery("webhooks/push.json"))).isEqualTo("ignored");
+
+    assertThat(commitListings.get()).isZero();
+  }
+
+  @Test
+  void addsPushedCommitsToTheLoadedLogUntilTheListingBringsThem() throws IOException {
+    assertThat(shas(repositorySync.commits("token", webClient, "kyan17", "gitstats", null, null))).containsExactly(PREVIOUS_HEAD);
+
+    assertThat(webhooks.handle("push", delivery("webhooks/push.json"))).isEqualTo("applied");
+
+    // The stub listing still ends at the previous head, so the refresh stops there and keeps the push.
+    assertThat(shas(repositorySync.commits("token", webClient, "kyan17", "gitstats", null, null)))
+        .containsExactlyInAnyOrder(PREVIOUS_HEAD, PUSHED);
+    assertThat(commitListings.get()).isEqualTo(2);
+  }
+
+  @Test
+  void dropsTheLogOnAForcedPush() throws IOException {
+    repositorySync.commits("token", webClient, "kyan17", "gitstats", null, null);
+    webhooks.handle("push", delivery("webhooks/push.json"));
+    var forced = (ObjectNode) delivery("webhooks/push.json");
+    forced.put("forced", true);
+
+    assertThat(webhooks.handle("push", forced)).isEqualTo("applied");
+
+    // Rebuilt from the listing, which does not have the rewritten commit.
+    assertThat(shas(repositorySync.commits("token", webClient, "kyan17", "gitstats", null, null))).containsExactly(PREVIOUS_HEAD);
+  }
+
+  @Test
+  void replacesIssuesAndRemovesDeletedOrTransferredOnes() throws IOException {
+    assertThat(numbers(repositorySync.issues("token", webClient, "kyan17", "gitstats", null))).containsExactlyInAnyOrder(41, 42);
+
+    webhooks.handle("pull_request", delivery("webhooks/pull_request-closed.json"));
+    webhooks.handle("issues", delivery("webhooks/issues-opened.json"));
+
+    var issues = repositorySync.issues("token", webClient, "kyan17", "gitstats", null);
+    assertThat(numbers(issues)).containsExactlyInAnyOrder(41, 42, 43);
+    // The listing still has #42 open, but the delivery is newer.
+    assertThat(issues).filteredOn(row -> row.number() == 42).singleElement()
+        .satisfies(row -> assertThat(row.mergedAt()).isPositive());
+
+    assertThat(webhooks.handle("issues", delivery("webhooks/issues-deleted.json"))).isEqualTo("applied");
+    assertThat(numbers(repositorySync.issues("token", webClient, "kyan17", "gitstats", null))).containsExactlyInAnyOrder(41, 42);
+
+    webhooks.handle("issues", delivery("webhooks/issues-opened.json"));
+    var transferred = (ObjectNode) delivery("webhooks/issues-deleted.json");
+    transferred.put("action", "transferred");
+    assertThat(webhooks.handle("issues", transferred)).isEqualTo("applied");
+    assertThat(numbers(repositorySync.issues("token", webClient, "kyan17", "gitstats", "kyan17", null))).containsExactly(41);
+  }
+
+  @Test
+  void dropsOnlyTheAggregatesOfTheChangedRepository() throws IOException {
+    var since = LocalDate.now(ZoneOffset.UTC).minusDays(30);
+    timelines.get("token", webClient, "kyan17", "gitstats", since);
+    dashboards.putContributionStats("token", new ContributionStats("kyan17", "gitstats", CommitPeriod.ALL_TIME, List.of()));
+    dashboards.putContributionStats("token", new ContributionStats("kyan17", "gitstats-docs", CommitPeriod.ALL_TIME, List.of()));
+
+    webhooks.handle("issues", delivery("webhooks/issues-opened.json"));
+
+    assertThat(dashboards.contributionStats("token", "kyan17", "gitstats", CommitPeriod.ALL_TIME)).isNull();
+    assertThat(dashboards.contributionStats("token", "kyan17", "gitstats-docs", CommitPeriod.ALL_TIME)).isNotNull();
+    double misses = meterRegistry.counter("gitstats.timeline.misses").count();
+    timelines.get("token", webClient, "kyan17", "gitstats", since);
+    assertThat(meterRegistry.counter("gitstats.timeline.misses").count()).isEqualTo(misses + 1);
+    verify(watchedRepositories).changed("kyan17", "gitstats");
+    verify(watchedRepositories, never()).changed("kyan17", "gitstats-docs");
+  }
+
+  private JsonNode delivery(String resource) throws IOException {
+    return objectMapper.readTree(StubGitHubServer.recorded(resource));
+  }
+
+  private static List<String> shas(List<RepositorySync.CommitRow> commits) {
+    return commits.stream().map(RepositorySync.CommitRow::sha).toList();
+  }
+
+  private static List<Integer> numbers(List<RepositorySync.IssueRow> issues) {
+    return issues.stream().map(RepositorySync.IssueRow::number).toList();
+  }
+
+}
@@ -0,0 +1,95 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphQlCommitHistorySourceTests {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+  private StubGitHubServer server;
+  private GraphQlCommitHistorySource source;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    server = new StubGitHubServer().route("/graphql", this::handle);
+    source = new GraphQlCommitHistorySource(server.webClient());
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    JsonNode request;
+    try (InputStream body = exchange.getRequestBody()) {
+      request = objectMapper.readTree(body);
+    }
+    requests.add(request);
+    var variables = request.path("variables");
+    String recording;
+    if (variables.has("login")) {
+      recording = "graphql/user-id.json";
+    } else if (variables.path("cursor").isNull()) {
+      recording = "graphql/history-page-1.json";
+    } else {
+      recording = "graphql/history-page-2.json";
+    }
+    StubGitHubServer.respond(exchange, recording);
+  }
+
+  @Test
+  void followsCursorsAcrossPages() {
+    var commits = source.history("token", "kyan17", "gitstats", "main", null, null)
+        .collectList()
+        .block();
+
+    assertThat(commits).hasSize(3);
+    assertThat(commits).extracting(CommitDetail::additions).containsExactly(120, 5, 300);
+    assertThat(commits).extracting(CommitDetail::authorLogin).containsExactly("kyan17", null, "ilanpiczenik");
+    assertThat(commits.getFirst().changedFiles()).isEqualTo(4);
+    assertThat(commits.getFirst().files()).isEmpty();
+    assertThat(requests).hasSize(2);
+    assertThat(requests.get(0).path("variables").path("expression").asText()).isEqualTo("main");
+    assertThat(requests.get(1).path("variables").path("cursor").asText()).isEqualTo("c2ba4b1e 1");
+  }
+
+  @Test
+  void resolvesAuthorLoginToNodeId() {
+    var commits = source.history("token", "kyan17", "gitstats", null, "kyan17", null)
+        .collectList()
+        .block();
+
+    assertThat(commits).hasSize(3);
+    assertThat(requests.getFirst().path("query").asText()).contains("user(login: $login)");
+    var historyVariables = requests.get(1).path("variables");
+    assertThat(historyVariables.path("expression").asText()).isEqualTo("HEAD");
+    assertThat(historyVariables.path("author").path("id").asText()).isEqualTo("MDQ6VXNlcjEyMzQ1Njc4");
+  }
+
+  @Test
+  void sendsTheAccessTokenAsBearer() {
+    var authorization = new CopyOnWriteArrayList<String>();
+    server.route("/graphql", exchange -> {
+      authorization.add(exchange.getRequestHeaders().getFirst("Authorization"));
+      handle(exchange);
+    });
+
+    source.history("secret", "kyan17", "gitstats", "main", null, null).blockLast();
+
+    assertThat(authorization).containsOnly("Bearer secret");
+  }
+
+}
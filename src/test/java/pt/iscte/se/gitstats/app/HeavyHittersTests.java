@@ -0,0 +1,40 @@
+package pt.iscte.se.gitstats.app;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTests {
+
+  @Test
+  void countsExactlyWhileEveryKeyHasACounter() {
+    var hotFiles = new HeavyHitters(8);
+    for (int key : new int[] {3, 1, 3, 2, 3, 1}) {
+      hotFiles.add(key);
+    }
+
+    assertThat(hotFiles.top(2)).containsExactly(
+        new HeavyHitters.Entry(3, 3L, 0L),
+        new HeavyHitters.Entry(1, 2L, 0L));
+  }
+
+  @Test
+  void keepsTheHottestKeysOfALongTailInBoundedCounters() {
+    var hotFiles = new HeavyHitters(64);
+    var random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      // Keys 0 to 4 take about a third of the changes, 50,000 cold keys share the rest.
+      int key = random.nextInt(3) == 0 ? random.nextInt(5) : 5 + random.nextInt(50_000);
+      hotFiles.add(key);
+    }
+
+    var top = hotFiles.top(5);
+    assertThat(top).extracting(HeavyHitters.Entry::key).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+    for (HeavyHitters.Entry entry : top) {
+      assertThat(entry.count() - entry.error()).isBetween(6_000L, 7_400L);
+    }
+  }
+
+}
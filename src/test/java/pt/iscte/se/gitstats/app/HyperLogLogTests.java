@@ -0,0 +1,55 @@
+package pt.iscte.se.gitstats.app;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTests {
+
+  @Test
+  void estimatesWithinTheConfiguredError() {
+    var sketch = new HyperLogLog(HyperLogLog.precisionFor(0.01));
+
+    for (int i = 0; i < 200_000; i++) {
+      sketch.add("src/main/java/pkg" + (i % 97) + "/File" + i + ".java");
+      sketch.add("src/main/java/pkg" + (i % 97) + "/File" + i + ".java");
+    }
+
+    assertThat(sketch.precision()).isEqualTo(14);
+    assertThat((double) sketch.estimate()).isCloseTo(200_000.0, within(200_000.0 * 3 * sketch.relativeError()));
+  }
+
+  @Test
+  void countsSmallSetsAlmostExactly() {
+    var sketch = new HyperLogLog(12);
+
+    for (int i = 0; i < 40; i++) {
+      sketch.add("README" + i + ".md");
+    }
+
+    assertThat(sketch.estimate()).isBetween(39L, 41L);
+  }
+
+  @Test
+  void mergesIntoTheSketchOfTheUnion() {
+    var alice = new HyperLogLog(12);
+    var bob = new HyperLogLog(12);
+    var both = new HyperLogLog(12);
+    for (int i = 0; i < 30_000; i++) {
+      alice.add("file" + i);
+      both.add("file" + i);
+    }
+    for (int i = 20_000; i < 50_000; i++) {
+      bob.add("file" + i);
+      both.add("file" + i);
+    }
+
+    alice.merge(bob);
+
+    assertThat(alice.estimate()).isEqualTo(both.estimate());
+    assertThatThrownBy(() -> alice.merge(new HyperLogLog(10))).isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
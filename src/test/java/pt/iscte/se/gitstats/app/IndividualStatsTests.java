@@ -0,0 +1,110 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.CommitPeriod;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndividualStatsTests {
+
+  private final OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+  private final List<CommitDetail> commits = new ArrayList<>();
+  private final StringJoiner issues = new StringJoiner(",", "[", "]");
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private StubGitHubServer server;
+  private RepositorySync repositorySync;
+  private RepositoryMetadataCache repositoryMetadata;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    // Activity an hour on either side of each window start, plus older and recent activity.
+    var instants = List.of(
+        now.minusHours(1),
+        now.minusWeeks(1).plusHours(1),
+        now.minusWeeks(1).minusHours(1),
+        now.minusMonths(1).plusHours(1),
+        now.minusMonths(1).minusHours(1),
+        now.minusYears(1));
+    for (int n = 0; n < instants.size(); n++) {
+      var at = instants.get(n);
+      commits.add(commit(n, "kyan17", at, 10 << n, 1 << n, "src/File" + n + ".java"));
+      issues.add(issue(2 * n + 1, "kyan17", at, null, false));
+      issues.add(issue(2 * n + 2, "kyan17", at.minusHours(2), at, true));
+    }
+    commits.add(commit(99, "ilanpiczenik", now.minusHours(1), 1000, 1000, "src/Other.java"));
+    issues.add(issue(99, "ilanpiczenik", now.minusHours(1), null, false));
+
+    server = new StubGitHubServer().route("/repos/kyan17/gitstats/issues",
+        exchange -> StubGitHubServer.respond(exchange, issues.toString().getBytes(StandardCharsets.UTF_8)));
+    repositorySync = new RepositorySync(50, Duration.ofHours(24), 1, WorkTypeClassifier.defaults());
+    repositoryMetadata = new RepositoryMetadataCache(Duration.ofMinutes(10), 100, meterRegistry);
+    repositoryMetadata.observe("token", new RepositoryMetadata("kyan17/gitstats", "main", "public", false, 0L, 0L));
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.close();
+  }
+
+  @Test
+  void computesEveryPeriodInOnePassLikeOnePeriodAtATime() {
+    CommitHistorySource history = (accessToken, owner, repo, branch, authorLogin, since) -> Flux.fromIterable(commits);
+    var webClient = server.webClient();
+
+    var allPeriods = IndividualStats.getCommitStatsForAllPeriods(
+        "token", webClient, history, repositorySync, repositoryMetadata, "kyan17", "gitstats", "kyan17",
+        CommitFactTable.EXACT);
+
+    for (var period : CommitPeriod.values()) {
+      assertThat(allPeriods.get(period)).isEqualTo(IndividualStats.getCommitStats(
+          "token", webClient, history, repositorySync, repositoryMetadata, "kyan17", "gitstats", "kyan17", period,
+          CommitFactTable.EXACT));
+    }
+    var week = allPeriods.get(CommitPeriod.LAST_WEEK);
+    assertThat(week.commitCount()).isEqualTo(2);
+    assertThat(week.totalLinesAdded()).isEqualTo(30L);
+    assertThat(week.issuesOpen()).isEqualTo(2);
+    assertThat(week.prsMerged()).isEqualTo(2);
+    assertThat(allPeriods.get(CommitPeriod.LAST_MONTH).commitCount()).isEqualTo(4);
+    assertThat(allPeriods.get(CommitPeriod.ALL_TIME).commitCount()).isEqualTo(6);
+    assertThat(allPeriods.get(CommitPeriod.ALL_TIME).issuesOpen()).isEqualTo(6);
+  }
+
+  private static CommitDetail commit(int n, String login, OffsetDateTime at, int additions, int deletions, String file) {
+    var sha = "%016x%024x".formatted(n + 1, n + 1);
+    return new CommitDetail(sha, login, at.toInstant().toString(), "commit " + n, additions, deletions, 1,
+        List.of(new CommitDetail.FileChange(file, additions, deletions)));
+  }
+
+  /**
+   * One element of the {@code /issues} listing: an open issue, or a pull request merged at {@code mergedAt}.
+   */
+  private static String issue(int number, String login, OffsetDateTime createdAt, OffsetDateTime mergedAt,
+                              boolean pullRequest) {
+    var updatedAt = mergedAt != null ? mergedAt : createdAt;
+    var state = mergedAt != null ? "closed" : "open";
+    var closedAt = mergedAt != null ? "\"" + mergedAt.toInstant() + "\"" : "null";
+    var pull = pullRequest
+        ? ", \"pull_request\": {\"merged_at\": " + closedAt + "}"
+        : "";
+    return """
+        {"number": %d, "user": {"login": "%s"}, "state": "%s", "created_at": "%s", "updated_at": "%s",
+         "closed_at": %s%s}""".formatted(number, login, state, createdAt.toInstant(), updatedAt.toInstant(), closedAt, pull);
+  }
+
+}
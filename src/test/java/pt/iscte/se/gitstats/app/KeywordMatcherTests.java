@@ -0,0 +1,37 @@
+package pt.iscte.se.gitstats.app;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeywordMatcherTests {
+
+  private final KeywordMatcher matcher = KeywordMatcher.builder()
+      .add("fix", 0)
+      .add("^test", 1)
+      .add(".md$", 2)
+      .add("ixture", 3)
+      .build();
+
+  @Test
+  void reportsEveryCategoryFoundIgnoringCase() {
+    assertThat(matcher.scan("Hotfix for the FIXTURE loader")).isEqualTo(0b1001L);
+    assertThat(matcher.scan("nothing here")).isZero();
+  }
+
+  @Test
+  void honoursStartAndEndAnchors() {
+    assertThat(matcher.scan("Tests for the parser")).isEqualTo(0b10L);
+    assertThat(matcher.scan("more tests")).isZero();
+    assertThat(matcher.scan("docs/README.MD")).isEqualTo(0b100L);
+    assertThat(matcher.scan("docs/readme.md.orig")).isZero();
+  }
+
+  @Test
+  void rejectsKeywordsItCannotMatch() {
+    assertThatThrownBy(() -> KeywordMatcher.builder().add("^", 0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> KeywordMatcher.builder().add("café", 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
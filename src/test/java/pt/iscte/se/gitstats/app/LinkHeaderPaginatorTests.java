@@ -0,0 +1,113 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinkHeaderPaginatorTests {
+
+  private static final int PAGES = 5;
+  private static final Pattern PAGE = Pattern.compile("[?&]page=(\\d+)");
+  private static final String URI = "/repos/{owner}/{repo}/commits?per_page=1";
+  private static final Object[] URI_VARIABLES = {"kyan17", "gitstats"};
+
+  /**
+   * Each page holds one item, its own page number.
+   */
+  private static final Function<Flux<DataBuffer>, Flux<String>> DECODER = body -> DataBufferUtils.join(body)
+      .map(buffer -> {
+        var text = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return text;
+      })
+      .flux();
+
+  private final List<Integer> requested = new CopyOnWriteArrayList<>();
+  private volatile boolean announcesLast = true;
+  private StubGitHubServer server;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    server = new StubGitHubServer().route("/repos/kyan17/gitstats/commits", this::handle);
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var matcher = PAGE.matcher(exchange.getRequestURI().getQuery());
+    int page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    requested.add(page);
+    var link = server.baseUrl() + "/repos/kyan17/gitstats/commits?per_page=1&page=";
+    if (page < PAGES) {
+      exchange.getResponseHeaders().add("Link", announcesLast
+          ? "<" + link + (page + 1) + ">; rel=\"next\", <" + link + PAGES + ">; rel=\"last\""
+          : "<" + link + (page + 1) + ">; rel=\"next\"");
+    }
+    StubGitHubServer.respond(exchange, Integer.toString(page).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void keepsPageOrderWhenPagesAreFetchedConcurrently() {
+    var pages = new LinkHeaderPaginator(server.webClient(), 4)
+        .pages("token", URI, URI_VARIABLES, DECODER, true)
+        .collectList()
+        .block();
+
+    assertThat(pages).containsExactly(List.of("1"), List.of("2"), List.of("3"), List.of("4"), List.of("5"));
+    assertThat(requested).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+  }
+
+  @Test
+  void deliversEveryPageOnceWhenUnordered() {
+    var pages = new LinkHeaderPaginator(server.webClient(), 4)
+        .pages("token", URI, URI_VARIABLES, DECODER, false)
+        .collectList()
+        .block();
+
+    assertThat(pages).containsExactlyInAnyOrder(List.of("1"), List.of("2"), List.of("3"), List.of("4"), List.of("5"));
+  }
+
+  @Test
+  void followsNextLinksWhenNoLastPageIsAnnounced() {
+    announcesLast = false;
+
+    var pages = new LinkHeaderPaginator(server.webClient(), 4)
+        .pages("token", URI, URI_VARIABLES, DECODER, true)
+        .collectList()
+        .block();
+
+    assertThat(pages).containsExactly(List.of("1"), List.of("2"), List.of("3"), List.of("4"), List.of("5"));
+    assertThat(requested).containsExactly(1, 2, 3, 4, 5);
+  }
+
+  @Test
+  void fetchesNothingAfterTheConsumerStops() throws InterruptedException {
+    var pages = new LinkHeaderPaginator(server.webClient(), 1)
+        .pages("token", URI, URI_VARIABLES, DECODER, true)
+        .take(2)
+        .collectList()
+        .block();
+
+    assertThat(pages).containsExactly(List.of("1"), List.of("2"));
+    // Leave time for a request that should not have been made to show up.
+    Thread.sleep(200);
+    assertThat(requested).containsExactly(1, 2);
+  }
+
+}
@@ -0,0 +1,165 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.RateLimitExceededException;
+import pt.iscte.se.gitstats.dto.RateLimitBudget;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitFilterTests {
+
+  private final RateLimitFilter filter = new RateLimitFilter(0.5, Duration.ofSeconds(60), 2);
+  private final Deque<ClientResponse> answers = new ArrayDeque<>();
+  private final List<ClientRequest> sent = new CopyOnWriteArrayList<>();
+
+  /**
+   * Answers with the responses queued in {@link #answers}, in order.
+   */
+  private final ExchangeFunction next = request -> {
+    sent.add(request);
+    return Mono.just(answers.removeFirst());
+  };
+
+  @Test
+  void readsTheBudgetFromTheRateLimitHeaders() {
+    long reset = epochSeconds(Duration.ofHours(1));
+    answers.add(withBudget(HttpStatus.OK, 5000, 4000, reset));
+
+    filter.filter(get("/repos/kyan17/gitstats"), next).block();
+
+    assertThat(filter.budget("token")).isEqualTo(new RateLimitBudget(5000, 4000, reset));
+    assertThat(filter.budget("another token")).isNull();
+  }
+
+  @Test
+  void retriesAfterTheWaitGitHubAsksFor() {
+    answers.add(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "0").build());
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+
+    var response = filter.filter(get("/repos/kyan17/gitstats"), next).block();
+
+    assertThat(response.statusCode().value()).isEqualTo(200);
+    assertThat(sent).hasSize(2);
+  }
+
+  @Test
+  void blocksTheTokenUntilRetryAfterOnceRetriesAreExhausted() {
+    var withoutRetries = new RateLimitFilter(0.5, Duration.ofSeconds(60), 0);
+    answers.add(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "120").build());
+
+    assertThatThrownBy(() -> withoutRetries.filter(get("/repos/kyan17/gitstats"), next).block())
+        .isInstanceOfSatisfying(RateLimitExceededException.class,
+            e -> assertThat(e.getRetryAfter()).isGreaterThan(Duration.ofSeconds(100)));
+    // Two minutes exceed max-wait, so the next request fails without being sent.
+    assertThatThrownBy(() -> withoutRetries.filter(get("/repos/kyan17/gitstats"), next).block())
+        .isInstanceOf(RateLimitExceededException.class);
+    assertThat(sent).hasSize(1);
+  }
+
+  @Test
+  void passesOrdinaryPermissionErrorsThrough() {
+    answers.add(ClientResponse.create(HttpStatus.FORBIDDEN).build());
+
+    var response = filter.filter(get("/repos/kyan17/private"), next).block();
+
+    assertThat(response.statusCode().value()).isEqualTo(403);
+    assertThat(sent).hasSize(1);
+  }
+
+  @Test
+  void keepsSeparateBucketsForCoreSearchAndGraphQl() {
+    answers.add(withBudget(HttpStatus.OK, 5000, 0, epochSeconds(Duration.ofHours(1))));
+    filter.filter(get("/repos/kyan17/gitstats"), next).block();
+
+    assertThatThrownBy(() -> filter.filter(get("/repos/kyan17/gitstats/commits"), next).block())
+        .isInstanceOf(RateLimitExceededException.class);
+
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+    filter.filter(get("/search/issues?q=repo:kyan17/gitstats"), next).block();
+    filter.filter(ClientRequest.create(HttpMethod.POST, URI.create("https://api.github.com/graphql"))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer token")
+        .build(), next).block();
+    assertThat(sent).hasSize(3);
+  }
+
+  @Test
+  void admitsOnlyWhatTheRemainingBudgetCovers() {
+    assertThatCode(() -> filter.admit("token", 1_000_000)).doesNotThrowAnyException();
+
+    answers.add(withBudget(HttpStatus.OK, 5000, 10, epochSeconds(Duration.ofHours(1))));
+    filter.filter(get("/repos/kyan17/gitstats"), next).block();
+
+    assertThatCode(() -> filter.admit("token", 10)).doesNotThrowAnyException();
+    assertThatThrownBy(() -> filter.admit("token", 11))
+        .isInstanceOfSatisfying(RateLimitExceededException.class,
+            e -> assertThat(e.getRetryAfter()).isPositive());
+  }
+
+  @Test
+  void keepsTheReserveForInteractiveRequests() {
+    // Registered in front of the pacing filter, as on the background WebClient.
+    var background = filter.keepingReserve(0.2).apply(filter.apply(next));
+    answers.add(withBudget(HttpStatus.OK, 5000, 2000, epochSeconds(Duration.ofHours(1))));
+    answers.add(withBudget(HttpStatus.OK, 5000, 900, epochSeconds(Duration.ofHours(1))));
+
+    background.exchange(get("/repos/kyan17/gitstats")).block();
+    background.exchange(get("/repos/kyan17/gitstats")).block();
+
+    assertThat(filter.keepsReserve("token", 0.2)).isFalse();
+    assertThatThrownBy(() -> background.exchange(get("/repos/kyan17/gitstats")).block())
+        .isInstanceOfSatisfying(RateLimitExceededException.class,
+            e -> assertThat(e.getRetryAfter()).isPositive());
+    assertThat(sent).hasSize(2);
+  }
+
+  @Test
+  void treatsTheBudgetAsRestoredOnceTheResetHasPassed() {
+    var background = filter.keepingReserve(0.2).apply(filter.apply(next));
+    answers.add(withBudget(HttpStatus.OK, 5000, 100, epochSeconds(Duration.ofSeconds(-10))));
+    filter.filter(get("/repos/kyan17/gitstats"), next).block();
+
+    assertThat(filter.budget("token").remaining()).isEqualTo(5000);
+    assertThat(filter.keepsReserve("token", 0.2)).isTrue();
+    assertThatCode(() -> filter.admit("token", 1000)).doesNotThrowAnyException();
+    answers.add(ClientResponse.create(HttpStatus.OK).build());
+    background.exchange(get("/repos/kyan17/gitstats")).block();
+    assertThat(sent).hasSize(2);
+  }
+
+  private static ClientRequest get(String path) {
+    return ClientRequest.create(HttpMethod.GET, URI.create("https://api.github.com" + path))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer token")
+        .build();
+  }
+
+  private static ClientResponse withBudget(HttpStatus status, int limit, int remaining, long resetEpochSeconds) {
+    return ClientResponse.create(status)
+        .header("X-RateLimit-Limit", Integer.toString(limit))
+        .header("X-RateLimit-Remaining", Integer.toString(remaining))
+        .header("X-RateLimit-Reset", Long.toString(resetEpochSeconds))
+        .build();
+  }
+
+  private static long epochSeconds(Duration fromNow) {
+    return (System.currentTimeMillis() + fromNow.toMillis()) / 1000L;
+  }
+
+}
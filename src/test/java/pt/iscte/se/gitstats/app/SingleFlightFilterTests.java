@@ -0,0 +1,135 @@
+package pt.iscte.se.gitstats.app;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightFilterTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final SingleFlightFilter filter = new SingleFlightFilter(1024, meterRegistry);
+  private final List<Sinks.One<ClientResponse>> upstream = new CopyOnWriteArrayList<>();
+  private final AtomicInteger cancelled = new AtomicInteger();
+
+  /**
+   * Each exchange stays pending until the test answers it through {@link #upstream}.
+   */
+  private final ExchangeFunction next = request -> {
+    Sinks.One<ClientResponse> answer = Sinks.one();
+    upstream.add(answer);
+    return answer.asMono().doOnCancel(cancelled::incrementAndGet);
+  };
+
+  @Test
+  void concurrentIdenticalGetsShareOneUpstreamCall() {
+    var first = body(get("/repos/kyan17/gitstats", "token"));
+    var second = body(get("/repos/kyan17/gitstats", "token"));
+
+    assertThat(upstream).hasSize(1);
+    upstream.getFirst().tryEmitValue(ok("{\"id\":1}"));
+
+    assertThat(first.join()).isEqualTo("{\"id\":1}");
+    assertThat(second.join()).isEqualTo("{\"id\":1}");
+    assertThat(meterRegistry.counter("gitstats.upstream.singleflight", "outcome", "coalesced").count()).isEqualTo(1.0);
+
+    // Nothing is kept once the answer is out.
+    body(get("/repos/kyan17/gitstats", "token"));
+    assertThat(upstream).hasSize(2);
+  }
+
+  @Test
+  void cancellingOneWaiterLeavesTheOtherWaiting() {
+    var cancelledWaiter = filter.filter(get("/repos/kyan17/gitstats", "token"), next).subscribe();
+    var remaining = body(get("/repos/kyan17/gitstats", "token"));
+
+    cancelledWaiter.dispose();
+
+    assertThat(cancelled.get()).isZero();
+    upstream.getFirst().tryEmitValue(ok("{\"id\":1}"));
+    assertThat(remaining.join()).isEqualTo("{\"id\":1}");
+  }
+
+  @Test
+  void cancellingEveryWaiterCancelsTheUpstreamCall() {
+    var first = filter.filter(get("/repos/kyan17/gitstats", "token"), next).subscribe();
+    var second = filter.filter(get("/repos/kyan17/gitstats", "token"), next).subscribe();
+
+    first.dispose();
+    second.dispose();
+
+    assertThat(cancelled.get()).isEqualTo(1);
+  }
+
+  @Test
+  void anUpstreamErrorReachesEveryWaiter() {
+    var first = body(get("/repos/kyan17/gitstats", "token"));
+    var second = body(get("/repos/kyan17/gitstats", "token"));
+
+    upstream.getFirst().tryEmitError(new IllegalStateException("connection reset"));
+
+    assertThatThrownBy(first::join).isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(second::join).isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void doesNotMergeOtherMethodsOrOtherTokens() {
+    var uri = URI.create("https://api.github.com/repos/kyan17/gitstats/issues");
+    filter.filter(ClientRequest.create(HttpMethod.POST, uri).build(), next).subscribe();
+    filter.filter(ClientRequest.create(HttpMethod.POST, uri).build(), next).subscribe();
+    assertThat(upstream).hasSize(2);
+
+    body(get("/repos/kyan17/gitstats", "token"));
+    body(get("/repos/kyan17/gitstats", "another token"));
+    assertThat(upstream).hasSize(4);
+  }
+
+  @Test
+  void handsABodyOfUnknownLengthToOneWaiterAndLetsTheOthersFetchTheirOwn() {
+    var first = body(get("/repos/kyan17/gitstats/commits/0d1a26e", "token"));
+    var second = body(get("/repos/kyan17/gitstats/commits/0d1a26e", "token"));
+
+    upstream.getFirst().tryEmitValue(ClientResponse.create(HttpStatus.OK).body("{\"sha\":\"0d1a26e\"}").build());
+
+    assertThat(first.join()).isEqualTo("{\"sha\":\"0d1a26e\"}");
+    assertThat(upstream).hasSize(2);
+    upstream.get(1).tryEmitValue(ok("{\"sha\":\"0d1a26e\"}"));
+    assertThat(second.join()).isEqualTo("{\"sha\":\"0d1a26e\"}");
+  }
+
+  private CompletableFuture<String> body(ClientRequest request) {
+    return filter.filter(request, next).flatMap(response -> response.bodyToMono(String.class)).toFuture();
+  }
+
+  private static ClientRequest get(String path, String token) {
+    return ClientRequest.create(HttpMethod.GET, URI.create("https://api.github.com" + path))
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .build();
+  }
+
+  private static ClientResponse ok(String body) {
+    return ClientResponse.create(HttpStatus.OK)
+        .header(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.getBytes(StandardCharsets.UTF_8).length))
+        .body(body)
+        .build();
+  }
+
+}
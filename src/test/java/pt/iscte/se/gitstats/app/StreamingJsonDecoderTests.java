@@ -0,0 +1,82 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingJsonDecoderTests {
+
+  @Test
+  void projectsACommitSplitAcrossManyBuffers() throws IOException {
+    byte[] json;
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("rest/commit-detail.json")) {
+      json = in.readAllBytes();
+    }
+
+    var commit = StreamingJsonDecoder.decodeObject(chunks(json, 7), CommitDetail::projection).single().block();
+
+    assertThat(commit.sha()).isEqualTo("6dcb09b5b57875f334f61aebed695e2e4193db5e");
+    assertThat(commit.authorLogin()).isEqualTo("kyan17");
+    assertThat(commit.date()).isEqualTo("2025-10-02T14:03:11Z");
+    assertThat(commit.message()).isEqualTo("Fix contributor ranking when a login is missing");
+    assertThat(commit.additions()).isEqualTo(10);
+    assertThat(commit.deletions()).isEqualTo(4);
+    assertThat(commit.changedFiles()).isEqualTo(2);
+    assertThat(commit.files()).containsExactly(
+        new CommitDetail.FileChange("src/main/java/pt/iscte/se/gitstats/app/GitHubService.java", 8, 3),
+        new CommitDetail.FileChange("README.md", 2, 1));
+  }
+
+  @Test
+  void emitsOneResultPerArrayElement() {
+    var json = """
+        [{"sha": "a", "author": null, "commit": {"author": {"date": "x"}}},
+         {"sha": "b", "author": {"login": "kyan17"}, "parents": [{"sha": "a"}]}]
+        """.getBytes(StandardCharsets.UTF_8);
+
+    var shas = StreamingJsonDecoder.decodeArray(chunks(json, 5), ShaProjection::new).collectList().block();
+
+    assertThat(shas).containsExactly("a:null", "b:kyan17");
+  }
+
+  private static Flux<DataBuffer> chunks(byte[] json, int size) {
+    List<DataBuffer> buffers = new ArrayList<>();
+    for (int start = 0; start < json.length; start += size) {
+      var chunk = Arrays.copyOfRange(json, start, Math.min(json.length, start + size));
+      buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+    }
+    return Flux.fromIterable(buffers);
+  }
+
+  private static final class ShaProjection implements JsonProjection<String> {
+    private String sha;
+    private String login;
+
+    @Override
+    public void value(String path, JsonParser parser) throws IOException {
+      switch (path) {
+        case "sha" -> sha = parser.getText();
+        case "author.login" -> login = parser.getText();
+        default -> {
+        }
+      }
+    }
+
+    @Override
+    public String build() {
+      return sha + ":" + login;
+    }
+  }
+
+}
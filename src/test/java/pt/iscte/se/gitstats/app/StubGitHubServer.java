@@ -0,0 +1,82 @@
+package pt.iscte.se.gitstats.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.jetty.client.HttpClient;
+import org.springframework.http.client.reactive.JettyClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Local HTTP server standing in for the GitHub API in tests, answering with the recordings under
+ * {@code src/test/resources}.
+ */
+final class StubGitHubServer implements AutoCloseable {
+
+  private final HttpServer server;
+  private final Set<String> paths = new HashSet<>();
+
+  StubGitHubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.start();
+  }
+
+  /**
+   * Answers requests under {@code path} with {@code handler}, replacing any handler set before.
+   */
+  synchronized StubGitHubServer route(String path, HttpHandler handler) {
+    if (!paths.add(path)) {
+      server.removeContext(path);
+    }
+    server.createContext(path, handler);
+    return this;
+  }
+
+  String baseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * A WebClient on the Jetty connector, as the application builds it, without any filters.
+   */
+  WebClient webClient() {
+    return WebClient.builder()
+        .baseUrl(baseUrl())
+        .clientConnector(new JettyClientHttpConnector(new HttpClient()))
+        .build();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  static void respond(HttpExchange exchange, String resource) throws IOException {
+    respond(exchange, recorded(resource));
+  }
+
+  static void respond(HttpExchange exchange, byte[] body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+    exchange.close();
+  }
+
+  static void respond(HttpExchange exchange, int status) throws IOException {
+    exchange.sendResponseHeaders(status, -1);
+    exchange.close();
+  }
+
+  static byte[] recorded(String resource) throws IOException {
+    try (InputStream in = StubGitHubServer.class.getClassLoader().getResourceAsStream(resource)) {
+      return in.readAllBytes();
+    }
+  }
+
+}
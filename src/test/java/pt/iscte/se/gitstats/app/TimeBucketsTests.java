@@ -0,0 +1,56 @@
+package pt.iscte.se.gitstats.app;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeBucketsTests {
+
+  @Test
+  void keepsTheSameWeekOfDifferentYearsApart() {
+    var buckets = TimeBuckets.between(TimeBuckets.Granularity.WEEK, LocalDate.of(2024, 12, 1), LocalDate.of(2026, 1, 31));
+    int[] counts = buckets.newCounts();
+
+    buckets.add(counts, epochSecond(LocalDate.of(2025, 1, 8)));
+    buckets.add(counts, epochSecond(LocalDate.of(2026, 1, 7)));
+
+    int first = buckets.slot(epochSecond(LocalDate.of(2025, 1, 8)));
+    int second = buckets.slot(epochSecond(LocalDate.of(2026, 1, 7)));
+    assertThat(first).isNotEqualTo(second);
+    assertThat(buckets.label(first)).isEqualTo("2025-W02");
+    assertThat(buckets.label(second)).isEqualTo("2026-W02");
+    assertThat(counts[first]).isEqualTo(1);
+    assertThat(counts[second]).isEqualTo(1);
+  }
+
+  @Test
+  void startsWeeksOnMondayAndMonthsOnTheFirst() {
+    var weeks = TimeBuckets.lastN(TimeBuckets.Granularity.WEEK, LocalDate.of(2026, 10, 16), 12);
+    var months = TimeBuckets.lastN(TimeBuckets.Granularity.MONTH, LocalDate.of(2026, 10, 16), 12);
+
+    assertThat(weeks.start(11)).isEqualTo(LocalDate.of(2026, 10, 12));
+    assertThat(weeks.since()).isEqualTo(LocalDate.of(2026, 7, 27));
+    assertThat(months.since()).isEqualTo(LocalDate.of(2025, 11, 1));
+    assertThat(months.label(11)).isEqualTo("Oct 2026");
+  }
+
+  @Test
+  void dropsEventsOutsideTheRange() {
+    var days = TimeBuckets.lastN(TimeBuckets.Granularity.DAY, LocalDate.of(2026, 10, 16), 30);
+    int[] counts = days.newCounts();
+
+    assertThat(days.add(counts, epochSecond(LocalDate.of(2026, 9, 16)))).isFalse();
+    assertThat(days.add(counts, epochSecond(LocalDate.of(2026, 9, 17)))).isTrue();
+    assertThat(days.add(counts, epochSecond(LocalDate.of(2026, 10, 17)))).isFalse();
+    assertThat(counts[0]).isEqualTo(1);
+    assertThat(days.label(0)).isEqualTo("Sep 17");
+  }
+
+  private static long epochSecond(LocalDate date) {
+    return date.atTime(12, 0).toEpochSecond(ZoneOffset.UTC);
+  }
+
+}
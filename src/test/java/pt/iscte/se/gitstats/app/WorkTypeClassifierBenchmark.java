@@ -0,0 +1,101 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of {@link WorkTypeClassifier} over a synthetic history mixing conventional and free-form
+ * messages. Run with {@code main} from the test classpath; scores are commits per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkTypeClassifierBenchmark {
+
+  private static final int COMMITS = 4096;
+
+  private static final String[] MESSAGES = {
+      "feat(timeline): bucket commits by ISO week",
+      "fix: keep the same week of two years apart",
+      "Fix crash when a contributor has no login",
+      "Refactor the repository sync into smaller methods",
+      "Update README with the new endpoints",
+      "Add coverage for the streaming decoder",
+      "Merge pull request #42 from kyan17/network-graph",
+      "Bump spring-boot from 3.5.5 to 3.5.6",
+  };
+
+  private static final String[] PATHS = {
+      "src/main/java/pt/iscte/se/gitstats/app/GitHubService.java",
+      "src/test/java/pt/iscte/se/gitstats/app/TimeBucketsTests.java",
+      "frontend/src/repo-stats/CommitTimelineView.tsx",
+      "frontend/src/common/Api.spec.ts",
+      "docs/architecture.md",
+      "README.md",
+      "pom.xml",
+  };
+
+  private final WorkTypeClassifier classifier = WorkTypeClassifier.defaults();
+  private CommitDetail[] commits;
+
+  @Setup
+  public void setUp() {
+    var random = new Random(42);
+    commits = new CommitDetail[COMMITS];
+    for (int i = 0; i < COMMITS; i++) {
+      List<CommitDetail.FileChange> files = new ArrayList<>();
+      for (int f = random.nextInt(4); f >= 0; f--) {
+        files.add(new CommitDetail.FileChange(PATHS[random.nextInt(PATHS.length)], random.nextInt(50), random.nextInt(20)));
+      }
+      commits[i] = new CommitDetail(Integer.toHexString(i), "kyan17", "2025-10-02T14:03:11Z",
+          MESSAGES[random.nextInt(MESSAGES.length)], 0, 0, files.size(), files);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COMMITS)
+  public void classify(Blackhole blackhole) {
+    for (CommitDetail commit : commits) {
+      blackhole.consume(classifier.classify(commit));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COMMITS)
+  public void classifyMessage(Blackhole blackhole) {
+    for (CommitDetail commit : commits) {
+      WorkType type = classifier.classifyMessage(commit.message());
+      blackhole.consume(type);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(WorkTypeClassifierBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+}
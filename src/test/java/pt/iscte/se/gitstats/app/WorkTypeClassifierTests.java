@@ -0,0 +1,32 @@
+package pt.iscte.se.gitstats.app;
+
+import pt.iscte.se.gitstats.dto.WorkType;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkTypeClassifierTests {
+
+  @Test
+  void settlesConventionalCommitsFromTheMessage() {
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("feat(parser): accept trailing commas")).isEqualTo(WorkType.FEATURE);
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("fix!: drop the stale token")).isEqualTo(WorkType.BUGFIX);
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("refactor: split the service")).isEqualTo(WorkType.REFACTOR);
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("Update README")).isEqualTo(WorkType.DOCUMENTATION);
+  }
+
+  @Test
+  void leavesMessagesTheFilesCouldOverrideToTheDetails() {
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("chore: bump dependencies")).isNull();
+    assertThat(WorkTypeClassifier.defaults().classifyMessage("Fix crash on login")).isNull();
+
+    var details = new CommitDetail("6dcb09b5b57875f334f61aebed695e2e4193db5e", "kyan17", "2025-10-02T14:03:11Z",
+        "Fix crash on login", 3, 1, 1,
+        List.of(new CommitDetail.FileChange("docs/login.md", 3, 1)));
+    assertThat(WorkTypeClassifier.defaults().classify(details)).isEqualTo(WorkType.DOCUMENTATION);
+  }
+
+}